@@ -1,35 +1,80 @@
 package com.zone.zone01blog.controller;
 
 import com.zone.zone01blog.service.FileStorageService;
-import org.springframework.core.io.Resource;
+import com.zone.zone01blog.service.MediaStreamingService;
+import com.zone.zone01blog.service.MediaVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/api/v1/media")
 public class MediaController {
 
     private final FileStorageService fileStorageService;
+    private final MediaStreamingService mediaStreamingService;
+    private final MediaVariantService mediaVariantService;
+    private final String cacheControl;
+    // original served in place of a variant still being generated: the URL will get other content
+    private final String pendingVariantCacheControl;
 
-    public MediaController(FileStorageService fileStorageService) {
+    public MediaController(FileStorageService fileStorageService, MediaStreamingService mediaStreamingService,
+            MediaVariantService mediaVariantService,
+            @Value("${media.cache-control.max-age-seconds:31536000}") long maxAgeSeconds,
+            @Value("${media.variants.pending-max-age-seconds:60}") long pendingMaxAgeSeconds) {
         this.fileStorageService = fileStorageService;
+        this.mediaStreamingService = mediaStreamingService;
+        this.mediaVariantService = mediaVariantService;
+        // a filename never gets other content, browsers and CDNs may keep it for good
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .cachePublic()
+                .immutable()
+                .getHeaderValue();
+        this.pendingVariantCacheControl = CacheControl.maxAge(Duration.ofSeconds(pendingMaxAgeSeconds))
+                .cachePublic()
+                .getHeaderValue();
     }
 
+    // supports Range requests, see MediaStreamingService. w: smallest variant at least
+    // that wide, see MediaVariantService
     @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> getFile(
-        @PathVariable String filename) {
-        Resource resource = fileStorageService.loadFileAsResource(filename);
+    public void getFile(
+        @PathVariable String filename,
+        @RequestParam(name = "w", required = false) Integer width,
+        HttpServletRequest request,
+        HttpServletResponse response) throws IOException {
+        FileStorageService.MediaMetadata metadata = fileStorageService.getMetadata(filename);
+
+        String cacheControlValue = cacheControl;
+        if (width != null && width > 0) {
+            FileStorageService.MediaMetadata variant = mediaVariantService.getVariant(metadata, width);
+            if (variant != null) {
+                metadata = variant;
+            } else {
+                cacheControlValue = pendingVariantCacheControl;
+            }
+        }
 
-        String contentType = fileStorageService.detectContentType(resource);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControlValue);
+        // If-None-Match / If-Modified-Since answered from the metadata, the file isn't opened
+        if (new ServletWebRequest(request, response).checkNotModified(metadata.etag(), metadata.lastModifiedMillis())) {
+            return;
+        }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+        Path file = fileStorageService.resolveFile(metadata.filename());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFileName() + "\"");
+        mediaStreamingService.serve(file, metadata, request, response);
     }
 }
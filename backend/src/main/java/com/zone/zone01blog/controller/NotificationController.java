@@ -1,12 +1,20 @@
 package com.zone.zone01blog.controller;
 
 import com.zone.zone01blog.dto.NotificationDTO;
+import com.zone.zone01blog.dto.NotificationPreferenceDTO;
+import com.zone.zone01blog.dto.PageResponse;
+import com.zone.zone01blog.dto.UpdateNotificationPreferenceRequest;
 import com.zone.zone01blog.security.JwtAuthenticationToken;
+import com.zone.zone01blog.service.AuthService;
+import com.zone.zone01blog.service.NotificationPreferenceService;
 import com.zone.zone01blog.service.NotificationService;
+import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -17,25 +25,37 @@ import java.util.Map;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationPreferenceService notificationPreferenceService;
+    private final AuthService authService;
 
-    public NotificationController(NotificationService notificationService) {
+    public NotificationController(NotificationService notificationService,
+            NotificationPreferenceService notificationPreferenceService,
+            AuthService authService) {
         this.notificationService = notificationService;
+        this.notificationPreferenceService = notificationPreferenceService;
+        this.authService = authService;
     }
 
+    // ?type=POST_LIKE&type=POST_COMMENT (or type=POST_LIKE,POST_COMMENT) filters by type
     @GetMapping
-    public ResponseEntity<List<NotificationDTO>> getNotifications(
-        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+    public ResponseEntity<PageResponse<NotificationDTO>> getNotifications(
+        @AuthenticationPrincipal JwtAuthenticationToken auth,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(name = "type", required = false) List<String> types,
+        @RequestParam(defaultValue = "false") boolean unreadOnly) {
         String userId = auth.getUserId();
-        List<NotificationDTO> notifications = notificationService.getUserNotifications(userId);
-        return ResponseEntity.ok(notifications);
+        return ResponseEntity.ok(notificationService.getNotifications(userId, cursor, limit, types, unreadOnly));
     }
 
     @GetMapping("/unread")
-    public ResponseEntity<List<NotificationDTO>> getUnreadNotifications(
-        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+    public ResponseEntity<PageResponse<NotificationDTO>> getUnreadNotifications(
+        @AuthenticationPrincipal JwtAuthenticationToken auth,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(name = "type", required = false) List<String> types) {
         String userId = auth.getUserId();
-        List<NotificationDTO> notifications = notificationService.getUnreadNotifications(userId);
-        return ResponseEntity.ok(notifications);
+        return ResponseEntity.ok(notificationService.getNotifications(userId, cursor, limit, types, true));
     }
 
     @GetMapping("/unread/count")
@@ -50,6 +70,38 @@ public class NotificationController {
         return ResponseEntity.ok(response);
     }
 
+    // Single-use ticket for opening the stream with EventSource (?ticket=), valid for a few seconds
+    @PostMapping("/stream-ticket")
+    public ResponseEntity<Map<String, Object>> createStreamTicket(
+        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("ticket", authService.createStreamTicket(auth.getUserId(), auth.getRole()));
+        response.put("expiresInMs", authService.getStreamTicketTtlMillis());
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Server-Sent Events: "notification" and "unread-count" events as they happen
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@AuthenticationPrincipal JwtAuthenticationToken auth) {
+        return notificationService.subscribe(auth.getUserId());
+    }
+
+    // one entry per NotificationType
+    @GetMapping("/preferences")
+    public ResponseEntity<List<NotificationPreferenceDTO>> getPreferences(
+        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+        return ResponseEntity.ok(notificationPreferenceService.getPreferences(auth.getUserId()));
+    }
+
+    @PutMapping("/preferences/{type}")
+    public ResponseEntity<List<NotificationPreferenceDTO>> updatePreference(
+        @PathVariable String type,
+        @Valid @RequestBody UpdateNotificationPreferenceRequest request,
+        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+        return ResponseEntity.ok(notificationPreferenceService.setMuted(auth.getUserId(), type, request.getMuted()));
+    }
+
     @PutMapping("/{notificationId}/read")
     public ResponseEntity<Void> markAsRead(
         @PathVariable String notificationId,
@@ -83,8 +135,10 @@ public class NotificationController {
     }
 
     @DeleteMapping("/{notificationId}")
-    public ResponseEntity<Void> deleteNotification(@PathVariable String notificationId) {
-        notificationService.deleteNotification(notificationId);
+    public ResponseEntity<Void> deleteNotification(
+        @PathVariable String notificationId,
+        @AuthenticationPrincipal JwtAuthenticationToken auth) {
+        notificationService.deleteNotification(auth.getUserId(), notificationId);
         return ResponseEntity.noContent().build();
     }
 
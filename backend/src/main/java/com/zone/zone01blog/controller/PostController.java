@@ -1,7 +1,6 @@
 package com.zone.zone01blog.controller;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
@@ -21,6 +20,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.zone.zone01blog.dto.CreatePostRequest;
+import com.zone.zone01blog.dto.PageResponse;
 import com.zone.zone01blog.dto.PostDTO;
 import com.zone.zone01blog.dto.UpdatePostRequest;
 import com.zone.zone01blog.security.JwtAuthenticationToken;
@@ -41,10 +41,12 @@ public class PostController {
     }
 
     @GetMapping
-    public ResponseEntity<List<PostDTO>> getAllPosts(
+    public ResponseEntity<PageResponse<PostDTO>> getAllPosts(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
         @AuthenticationPrincipal JwtAuthenticationToken auth) {
         String userId = auth.getUserId();
-        List<PostDTO> posts = postService.getAllPosts(userId);
+        PageResponse<PostDTO> posts = postService.getAllPosts(userId, cursor, limit);
         return ResponseEntity.ok(posts);
     }
 
@@ -58,10 +60,12 @@ public class PostController {
     }
 
     @GetMapping("/feed")
-    public ResponseEntity<List<PostDTO>> getFeed(
+    public ResponseEntity<PageResponse<PostDTO>> getFeed(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
         @AuthenticationPrincipal JwtAuthenticationToken auth) {
         String userId = auth.getUserId();
-        List<PostDTO> feed = postService.getFeed(userId);
+        PageResponse<PostDTO> feed = postService.getFeed(userId, cursor, limit);
         return ResponseEntity.ok(feed);
     }
 
@@ -1,13 +1,13 @@
 package com.zone.zone01blog.controller;
 
-import java.util.List;
-
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.zone.zone01blog.dto.PageResponse;
 import com.zone.zone01blog.dto.PostDTO;
 import com.zone.zone01blog.dto.UserDTO;
 import com.zone.zone01blog.service.PostService;
@@ -33,13 +33,17 @@ public class PublicUserController {
         UserDTO user = userService.getUserById(id);
         user.setFollowersCount(subscriptionService.getFollowersCount(id));
         user.setFollowingCount(subscriptionService.getFollowingCount(id));
+        user.setPostsCount(postService.getPostsCount(id));
         user.setIsFollowedByCurrentUser(false);
         return ResponseEntity.ok(user);
     }
 
     @GetMapping("/{id}/posts")
-    public ResponseEntity<List<PostDTO>> getPublicUserPosts(@PathVariable String id) {
-        List<PostDTO> posts = postService.getPostsByUserId(id, null);
+    public ResponseEntity<PageResponse<PostDTO>> getPublicUserPosts(
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        PageResponse<PostDTO> posts = postService.getPostsByUserId(id, null, cursor, limit);
         return ResponseEntity.ok(posts);
     }
 }
@@ -1,6 +1,7 @@
 package com.zone.zone01blog.controller;
 
 import com.zone.zone01blog.dto.CreateUserRequest;
+import com.zone.zone01blog.dto.PageResponse;
 import com.zone.zone01blog.dto.PostDTO;
 import com.zone.zone01blog.dto.UpdateUserRequest;
 import com.zone.zone01blog.dto.UserDTO;
@@ -44,6 +45,7 @@ public class UserController {
 
         user.setFollowersCount(subscriptionService.getFollowersCount(id));
         user.setFollowingCount(subscriptionService.getFollowingCount(id));
+        user.setPostsCount(postService.getPostsCount(id));
 
         if (auth != null) {
             String currentUserId = auth.getUserId();
@@ -56,11 +58,13 @@ public class UserController {
     }
 
     @GetMapping("/{id}/posts")
-    public ResponseEntity<List<PostDTO>> getUserPosts(
+    public ResponseEntity<PageResponse<PostDTO>> getUserPosts(
             @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
             @AuthenticationPrincipal JwtAuthenticationToken auth) {
         String currentUserId = auth.getUserId();
-        List<PostDTO> posts = postService.getPostsByUserId(id, currentUserId);
+        PageResponse<PostDTO> posts = postService.getPostsByUserId(id, currentUserId, cursor, limit);
         return ResponseEntity.ok(posts);
     }
 
@@ -82,6 +86,7 @@ public class UserController {
         // Add follower counts
         user.setFollowersCount(subscriptionService.getFollowersCount(userId));
         user.setFollowingCount(subscriptionService.getFollowingCount(userId));
+        user.setPostsCount(postService.getPostsCount(userId));
 
         return ResponseEntity.ok(user);
     }
@@ -1,6 +1,7 @@
 package com.zone.zone01blog.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,5 +20,8 @@ public class NotificationDTO {
     private String relatedPostId;
     private boolean isRead;
     private LocalDateTime createdAt;
+    // > 1 for coalesced likes/comments, relatedUser is the most recent actor
+    private int actorCount;
+    private List<String> recentActorIds;
 
 }
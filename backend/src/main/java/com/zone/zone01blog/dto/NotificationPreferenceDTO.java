@@ -0,0 +1,13 @@
+package com.zone.zone01blog.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class NotificationPreferenceDTO {
+    private String type;
+    private boolean muted;
+}
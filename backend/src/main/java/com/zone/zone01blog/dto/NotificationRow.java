@@ -0,0 +1,24 @@
+package com.zone.zone01blog.dto;
+
+import java.time.LocalDateTime;
+
+import com.zone.zone01blog.entity.NotificationType;
+
+// Columns of one inbox row, selected directly instead of loading Notification and User entities
+public record NotificationRow(
+        String id,
+        NotificationType type,
+        String message,
+        boolean isRead,
+        LocalDateTime readChangedAt,
+        LocalDateTime createdAt,
+        int actorCount,
+        String recentActorIds,
+        String relatedPostId,
+        String relatedUserId,
+        String relatedUserName,
+        String relatedUserEmail,
+        String relatedUserRole,
+        LocalDateTime relatedUserCreatedAt,
+        LocalDateTime relatedUserUpdatedAt) {
+}
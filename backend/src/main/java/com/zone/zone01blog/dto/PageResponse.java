@@ -0,0 +1,16 @@
+package com.zone.zone01blog.dto;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+// One page of a cursor-paginated list. nextCursor is null on the last page
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class PageResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+}
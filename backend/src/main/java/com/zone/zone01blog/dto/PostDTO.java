@@ -1,6 +1,7 @@
 package com.zone.zone01blog.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,6 +25,12 @@ public class PostDTO {
     private boolean likedByCurrentUser;
     private String mediaUrl;
     private String mediaType;
+    // image size and a tiny data URI to paint until the image loads; null for videos
+    private Integer mediaWidth;
+    private Integer mediaHeight;
+    private String mediaPlaceholder;
     private boolean hidden;
+    // width -> URL of the downscaled image, for srcset; empty for videos and GIF/WebP
+    private Map<Integer, String> mediaVariantUrls;
 
 }
@@ -0,0 +1,14 @@
+package com.zone.zone01blog.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class UpdateNotificationPreferenceRequest {
+    @NotNull(message = "muted is required")
+    private Boolean muted;
+}
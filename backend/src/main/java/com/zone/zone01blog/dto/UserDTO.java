@@ -16,6 +16,7 @@ public class UserDTO {
     
     private Long followersCount;
     private Long followingCount;
+    private Long postsCount;
     private Boolean isFollowedByCurrentUser;
 
     public UserDTO(String id, String name, String email, String role, Boolean banned,
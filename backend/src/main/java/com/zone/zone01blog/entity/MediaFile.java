@@ -0,0 +1,63 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A stored blob and its metadata, written once when the file is stored so downloads
+// never have to open the file to find out what it is (see FileStorageService).
+// Uploads are named by content hash, so identical uploads share one blob; refCount is
+// the number of posts using it and MediaSweeperService reclaims blobs left at 0.
+// width/height are null for videos and image formats ImageIO can't read, placeholder
+// (a tiny PNG data URI, copied onto the posts using the image) too.
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "media_files", indexes = {
+    // sweeper candidates
+    @Index(name = "idx_media_files_ref_count_updated", columnList = "ref_count, updated_at")
+})
+public class MediaFile {
+
+    @Id
+    private String filename;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    // hex SHA-256 of the content
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Column(length = 1024)
+    private String placeholder;
+
+    // Maintained with native UPDATEs, never written through the entity
+    @Builder.Default
+    @Column(name = "ref_count", nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private int refCount = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // last ref_count change
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,33 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A NEW_POST notification the user deleted while NEW_POST is pulled (see
+// NewPostNotificationService): the post is no longer merged into their inbox.
+// Only needed while the post is inside the pull window, purged with NEW_POST retention.
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "new_post_dismissals", indexes = {
+    @Index(name = "idx_new_post_dismissals_dismissed_at", columnList = "dismissed_at")
+})
+public class NewPostDismissal {
+
+    @EmbeddedId
+    private NewPostDismissalId id;
+
+    @Column(name = "dismissed_at", nullable = false)
+    private LocalDateTime dismissedAt;
+}
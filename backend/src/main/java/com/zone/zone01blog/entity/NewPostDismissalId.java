@@ -0,0 +1,22 @@
+package com.zone.zone01blog.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Embeddable
+public class NewPostDismissalId implements Serializable {
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "post_id", nullable = false)
+    private String postId;
+}
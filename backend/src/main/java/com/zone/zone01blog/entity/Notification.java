@@ -16,7 +16,16 @@ import java.time.LocalDateTime;
 @Builder
 @Data
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notifications_related_post_user", columnList = "related_post_id, user_id"),
+    // inbox pages: (created_at, id) keyset per user
+    @Index(name = "idx_notifications_user_created_id", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_notifications_user_read_changed", columnList = "user_id, read_changed_at"),
+    // retention job: expired rows of one type
+    @Index(name = "idx_notifications_type_created", columnList = "type, created_at"),
+    // target of the coalescing upsert, rows without a group key never conflict
+    @Index(name = "uk_notifications_user_group", columnList = "user_id, group_key", unique = true)
+})
 @EntityListeners(AuditingEntityListener.class)
 public class Notification {
 
@@ -42,9 +51,28 @@ public class Notification {
     @JoinColumn(name = "related_post_id")
     private Post relatedPost;
 
+    // Read state set on this notification alone. It wins over the user's read watermark
+    // only when readChangedAt is after it (see NotificationInboxState).
     @Column(nullable = false)
     private boolean isRead = false;
 
+    @Column(name = "read_changed_at")
+    private LocalDateTime readChangedAt;
+
+    // Likes/comments on the same post within one time window share a row
+    // ("Alice and 41 others liked your post"), see NotificationService.
+    // relatedUser is then the most recent actor.
+    @Column(name = "group_key", length = 120)
+    private String groupKey;
+
+    @Builder.Default
+    @Column(name = "actor_count", nullable = false, columnDefinition = "integer default 1")
+    private int actorCount = 1;
+
+    // most recent actors first, comma separated
+    @Column(name = "recent_actor_ids", length = 200)
+    private String recentActorIds;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
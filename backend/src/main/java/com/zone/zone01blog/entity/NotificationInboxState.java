@@ -0,0 +1,41 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Per-user notification read watermark: everything created at or before lastReadAt
+// counts as read unless it was marked unread afterwards (see Notification.readChangedAt).
+// "Mark all as read" moves the watermark instead of updating every notification.
+// unreadCount is maintained incrementally by NotificationCounterService, null until
+// it was first computed for the user.
+// clearedAt is when the user last deleted all notifications: pulled NEW_POST items
+// (see NewPostNotificationService) of posts created before it are not shown.
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "notification_inbox_state")
+public class NotificationInboxState {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+
+    @Column(name = "unread_count")
+    private Long unreadCount;
+
+    @Column(name = "cleared_at")
+    private LocalDateTime clearedAt;
+}
@@ -0,0 +1,32 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Per-user, per-type notification setting. No row means the type is delivered;
+// a muted type is never written for the user (see NotificationPreferenceService).
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "notification_preferences")
+public class NotificationPreference {
+
+    @EmbeddedId
+    private NotificationPreferenceId id;
+
+    @Column(nullable = false)
+    private boolean muted;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,80 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+// Notification side effect written in the same transaction as the change that caused it
+// (like, comment, follow, new post) and delivered later by OutboxService.
+// Events with the same ordering key (the recipient, or the author for a NEW_POST
+// fan-out) are delivered one at a time in id order.
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_available_id", columnList = "available_at, id"),
+    @Index(name = "idx_outbox_ordering_key_id", columnList = "ordering_key, id")
+})
+@EntityListeners(AuditingEntityListener.class)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationType type;
+
+    @Column(name = "ordering_key", nullable = false, length = 100)
+    private String orderingKey;
+
+    // null for NEW_POST, which goes to every follower of the actor
+    @Column(name = "recipient_id")
+    private String recipientId;
+
+    @Column(name = "actor_id")
+    private String actorId;
+
+    @Column(name = "post_id")
+    private String postId;
+
+    @Column(nullable = false, length = 500)
+    private String message;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    // set once the event ran out of attempts, it is kept for inspection but no longer delivered
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -11,6 +11,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -23,7 +24,18 @@ import lombok.Builder;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+    // keyset pagination: ORDER BY created_at DESC, id DESC
+    @Index(name = "idx_posts_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_posts_user_created_at_id", columnList = "user_id, created_at, id"),
+    // media reference checks (MediaSweeperService)
+    @Index(name = "idx_posts_media_url", columnList = "media_url"),
+    // pulled authors of a feed (TimelineService)
+    @Index(name = "idx_posts_user_pushed", columnList = "user_id, pushed"),
+    // authors with unpushed posts (TimelineService.pushPulledAuthors), a range of
+    // pushed = false; no partial indexes through @Index
+    @Index(name = "idx_posts_pushed_user", columnList = "pushed, user_id")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Data
 public class Post {
@@ -49,9 +61,40 @@ public class Post {
     @Column(name = "media_type")
     private String mediaType;
 
+    // copied from media_files at upload, so feed pages don't need a lookup per post
+    @Column(name = "media_width")
+    private Integer mediaWidth;
+
+    @Column(name = "media_height")
+    private Integer mediaHeight;
+
+    @Column(name = "media_placeholder", length = 1024)
+    private String mediaPlaceholder;
+
     @Column(nullable = false)
     private boolean hidden = false;
 
+    // true once the post is in every follower's timeline_entries, false while it is
+    // pulled at read time (see TimelineService). Set with native UPDATEs only; rows
+    // from before this column start unpushed and are pushed by the timeline job.
+    @Builder.Default
+    @Column(nullable = false, updatable = false, columnDefinition = "boolean default false")
+    private boolean pushed = false;
+
+    // Maintained by PostCounterService with bulk UPDATEs, never written through the entity
+    @Builder.Default
+    @Column(name = "like_count", nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long likeCount = 0L;
+
+    @Builder.Default
+    @Column(name = "comment_count", nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long commentCount = 0L;
+
+    // bumped by every counter write, so the repair can tell a quiet post from a busy one
+    @Builder.Default
+    @Column(name = "counter_version", nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long counterVersion = 0L;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -19,6 +19,9 @@ import java.util.Objects;
 @Entity
 @Table(name = "subscriptions", uniqueConstraints = {
     @UniqueConstraint(columnNames = { "follower_id", "following_id" })
+}, indexes = {
+    // followers of a user, in follower id order
+    @Index(name = "idx_subscriptions_following_follower", columnList = "following_id, follower_id")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class Subscription {
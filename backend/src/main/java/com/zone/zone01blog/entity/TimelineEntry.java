@@ -0,0 +1,49 @@
+package com.zone.zone01blog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Materialized home timeline (fan-out on write): one row per (reader, post).
+// Rows are written with set-based native inserts from TimelineRepository, this
+// mapping is used for reading the timeline back.
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Data
+@Entity
+@Table(name = "timeline_entries", indexes = {
+    // a feed page is a range scan on the reader's own rows
+    @Index(name = "idx_timeline_owner_created_post", columnList = "owner_id, post_created_at, post_id"),
+    @Index(name = "idx_timeline_post", columnList = "post_id")
+})
+public class TimelineEntry {
+
+    @EmbeddedId
+    private TimelineEntryId id;
+
+    @MapsId("postId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "post_id", nullable = false)
+    private Post post;
+
+    // copied from the post so unfollow can drop an author's rows without a join
+    @Column(name = "author_id", nullable = false)
+    private String authorId;
+
+    // copied from the post so pagination never leaves this table's index
+    @Column(name = "post_created_at", nullable = false)
+    private LocalDateTime postCreatedAt;
+}
@@ -0,0 +1,23 @@
+package com.zone.zone01blog.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Embeddable
+public class TimelineEntryId implements Serializable {
+
+    // whose home timeline this row belongs to
+    @Column(name = "owner_id", nullable = false)
+    private String ownerId;
+
+    @Column(name = "post_id", nullable = false)
+    private String postId;
+}
@@ -1,8 +1,8 @@
 package com.zone.zone01blog.filter;
 
-import com.zone.zone01blog.entity.User;
-import com.zone.zone01blog.repository.UserRepository;
 import com.zone.zone01blog.security.JwtAuthenticationToken;
+import com.zone.zone01blog.security.UserSecurityCache;
+import com.zone.zone01blog.security.UserSecurityState;
 import com.zone.zone01blog.util.*;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -13,17 +13,16 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Optional;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final UserSecurityCache userSecurityCache;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserRepository userRepository) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserSecurityCache userSecurityCache) {
         this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.userSecurityCache = userSecurityCache;
     }
 
     @Override
@@ -40,35 +39,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        JwtClaims claims;
+        String token = resolveToken(request);
+        // EventSource can't send headers, the notification stream takes a single-use
+        // ticket (POST /api/v1/notifications/stream-ticket) as a parameter instead
+        String ticket = path.equals("/api/v1/notifications/stream") ? request.getParameter("ticket") : null;
+        if (token != null) {
+            claims = jwtUtil.verify(token);
+        } else if (ticket != null) {
+            claims = jwtUtil.redeemStreamTicket(ticket);
+        } else {
             response.sendError(401, "Missing or invalid Authorization header");
             return;
         }
-
-        String token = authHeader.substring(7);
-
-        if (!jwtUtil.validateToken(token)) {
+        if (claims == null) {
             response.sendError(401, "Invalid or expired token");
             return;
         }
 
-        String userId = jwtUtil.getUserIdFromToken(token);
-        String role = jwtUtil.getRoleFromToken(token);
+        String userId = claims.userId();
+        String role = claims.role();
 
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            if (user.isBanned()) {
+        UserSecurityState user = userSecurityCache.get(userId);
+        if (user != null) {
+            if (user.banned()) {
                 response.sendError(403, "Your account has been banned");
                 return;
             }
-            if (user.isSuspended()) {
+            if (user.suspended()) {
                 response.sendError(403, "Your account has been suspended");
                 return;
             }
-            long tokenVersion = jwtUtil.getTokenVersionFromToken(token);
-            if (tokenVersion != user.getTokenVersionSafe()) {
+            if (claims.tokenVersion() != user.tokenVersion()) {
                 response.sendError(401, "Token has been revoked");
                 return;
             }
@@ -81,4 +83,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Continue go go go
         filterChain.doFilter(request, response);
     }
+
+    private String resolveToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        return null;
+    }
 }
@@ -18,6 +18,4 @@ public interface CommentRepository extends JpaRepository<Comment, String> {
     @Query("SELECT c FROM Comment c JOIN FETCH c.author WHERE c.id = :id")
     Comment findByIdWithAuthor(String id);
 
-        long countByPostIdAndHiddenFalse(String postId);
-
 }
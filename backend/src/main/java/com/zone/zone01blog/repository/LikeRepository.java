@@ -5,6 +5,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,7 +19,9 @@ public interface LikeRepository extends JpaRepository<Like, String> {
     // Check if like exists (more efficient than findBy)
         boolean existsByUserIdAndPostId(String userId, String postId);
 
-        long countByPostId(String postId);
-
         void deleteByUserIdAndPostId(String userId, String postId);
+
+    // Batch version used when rendering a list of posts (one query instead of one per post)
+    @Query("SELECT l.post.id FROM Like l WHERE l.user.id = :userId AND l.post.id IN :postIds")
+    List<String> findLikedPostIds(String userId, Collection<String> postIds);
 }
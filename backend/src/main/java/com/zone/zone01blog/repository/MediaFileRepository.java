@@ -0,0 +1,79 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.zone.zone01blog.entity.MediaFile;
+
+@Repository
+public interface MediaFileRepository extends JpaRepository<MediaFile, String> {
+
+    // first writer wins: a lazy backfill can race the same file on two requests
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO media_files (filename, content_type, size_bytes, sha256, width, height, " +
+            "   placeholder, ref_count, created_at, updated_at) " +
+            "VALUES (:filename, :contentType, :sizeBytes, :sha256, :width, :height, :placeholder, :refCount, " +
+            "   :createdAt, :createdAt) " +
+            "ON CONFLICT (filename) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("filename") String filename, @Param("contentType") String contentType,
+            @Param("sizeBytes") long sizeBytes, @Param("sha256") String sha256,
+            @Param("width") Integer width, @Param("height") Integer height,
+            @Param("placeholder") String placeholder, @Param("refCount") int refCount, @Param("createdAt") LocalDateTime createdAt);
+
+    // Serializes uploads and the sweeper on one blob until the transaction ends
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext(:filename))) l", nativeQuery = true)
+    int lockBlob(@Param("filename") String filename);
+
+    // keeps a blob out of the sweeper's reach for another grace period
+    @Modifying
+    @Query("UPDATE MediaFile m SET m.updatedAt = :now WHERE m.filename = :filename")
+    int touch(@Param("filename") String filename, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MediaFile m SET m.refCount = m.refCount + 1, m.updatedAt = :now WHERE m.filename = :filename")
+    int acquire(@Param("filename") String filename, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MediaFile m SET m.refCount = CASE WHEN m.refCount > 0 THEN m.refCount - 1 ELSE 0 END, " +
+            "m.updatedAt = :now WHERE m.filename = :filename")
+    int release(@Param("filename") String filename, @Param("now") LocalDateTime now);
+
+    @Query("SELECT m.filename FROM MediaFile m WHERE m.refCount = 0 AND m.updatedAt < :cutoff ORDER BY m.updatedAt")
+    List<String> findUnreferencedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // Still unreferenced, also by the posts themselves, and unchanged since the cutoff
+    @Modifying
+    @Query(value = "DELETE FROM media_files m WHERE m.filename = :filename AND m.ref_count = 0 " +
+            "AND m.updated_at < :cutoff " +
+            "AND NOT EXISTS (SELECT 1 FROM posts p WHERE p.media_url = :prefix || m.filename)", nativeQuery = true)
+    int deleteUnreferenced(@Param("filename") String filename, @Param("cutoff") LocalDateTime cutoff,
+            @Param("prefix") String urlPrefix);
+
+    // Rows written before updated_at existed have it null and would never be swept.
+    // Filled in here rather than COALESCEd in the candidate query, which keeps that
+    // query on the (ref_count, updated_at) index.
+    @Modifying
+    @Query(value = "UPDATE media_files SET updated_at = created_at WHERE updated_at IS NULL", nativeQuery = true)
+    int backfillUpdatedAt();
+
+    // Recounts references from posts.media_url and fixes the counts that drifted
+    // (rows backfilled at 0, posts removed without going through PostService)
+    @Modifying
+    @Query(value = "UPDATE media_files m SET ref_count = COALESCE(r.refs, 0), updated_at = :now " +
+            "FROM media_files m2 LEFT JOIN (" +
+            "   SELECT substr(p.media_url, length(:prefix) + 1) AS filename, COUNT(*) AS refs " +
+            "   FROM posts p WHERE p.media_url LIKE :prefix || '%' GROUP BY 1) r ON r.filename = m2.filename " +
+            "WHERE m.filename = m2.filename AND m.ref_count <> COALESCE(r.refs, 0)", nativeQuery = true)
+    int reconcileRefCounts(@Param("prefix") String urlPrefix, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,22 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.zone.zone01blog.entity.NewPostDismissal;
+import com.zone.zone01blog.entity.NewPostDismissalId;
+
+@Repository
+public interface NewPostDismissalRepository extends JpaRepository<NewPostDismissal, NewPostDismissalId> {
+
+    @Modifying
+    @Query(value = "INSERT INTO new_post_dismissals (user_id, post_id, dismissed_at) " +
+            "VALUES (:userId, :postId, :dismissedAt) ON CONFLICT (user_id, post_id) DO NOTHING", nativeQuery = true)
+    void insert(@Param("userId") String userId, @Param("postId") String postId,
+            @Param("dismissedAt") LocalDateTime dismissedAt);
+}
@@ -0,0 +1,71 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.zone.zone01blog.entity.NotificationInboxState;
+
+@Repository
+public interface NotificationInboxStateRepository extends JpaRepository<NotificationInboxState, String> {
+
+    @Query("SELECT s.lastReadAt FROM NotificationInboxState s WHERE s.userId = :userId")
+    Optional<LocalDateTime> findLastReadAtByUserId(@Param("userId") String userId);
+
+    // the watermark only moves forward, nothing is unread afterwards
+    @Modifying
+    @Query(value = "INSERT INTO notification_inbox_state (user_id, last_read_at, unread_count) VALUES (:userId, :readAt, 0) " +
+            "ON CONFLICT (user_id) DO UPDATE SET last_read_at = " +
+            "GREATEST(notification_inbox_state.last_read_at, EXCLUDED.last_read_at), unread_count = 0", nativeQuery = true)
+    void markAllRead(@Param("userId") String userId, @Param("readAt") LocalDateTime readAt);
+
+    @Query("SELECT s.clearedAt FROM NotificationInboxState s WHERE s.userId = :userId")
+    Optional<LocalDateTime> findClearedAtByUserId(@Param("userId") String userId);
+
+    // only moves forward
+    @Modifying
+    @Query(value = "INSERT INTO notification_inbox_state (user_id, cleared_at) VALUES (:userId, :clearedAt) " +
+            "ON CONFLICT (user_id) DO UPDATE SET cleared_at = " +
+            "GREATEST(notification_inbox_state.cleared_at, EXCLUDED.cleared_at)", nativeQuery = true)
+    void markCleared(@Param("userId") String userId, @Param("clearedAt") LocalDateTime clearedAt);
+
+    // empty when the counter was never computed for this user
+    @Query("SELECT s.unreadCount FROM NotificationInboxState s WHERE s.userId = :userId")
+    Optional<Long> findUnreadCountByUserId(@Param("userId") String userId);
+
+    // sets the first computed value, never overwrites a maintained counter
+    @Modifying
+    @Query(value = "INSERT INTO notification_inbox_state (user_id, unread_count) VALUES (:userId, :count) " +
+            "ON CONFLICT (user_id) DO UPDATE SET unread_count = EXCLUDED.unread_count " +
+            "WHERE notification_inbox_state.unread_count IS NULL", nativeQuery = true)
+    void initUnreadCount(@Param("userId") String userId, @Param("count") long count);
+
+    @Modifying
+    @Query(value = "INSERT INTO notification_inbox_state (user_id, unread_count) VALUES (:userId, 0) " +
+            "ON CONFLICT (user_id) DO UPDATE SET unread_count = 0", nativeQuery = true)
+    void resetUnreadCount(@Param("userId") String userId);
+
+    // uninitialized counters stay null
+    @Modifying
+    @Query("UPDATE NotificationInboxState s SET s.unreadCount = s.unreadCount + :delta " +
+            "WHERE s.userId IN :userIds AND s.unreadCount IS NOT NULL")
+    void adjustUnreadCounts(@Param("userIds") Collection<String> userIds, @Param("delta") long delta);
+
+    // Recomputes every maintained counter from notifications with the same rules as
+    // NotificationService (watermark plus per-row overrides) and fixes the ones that drifted
+    @Modifying
+    @Query(value = "UPDATE notification_inbox_state s SET unread_count = c.unread FROM (" +
+            "   SELECT st.user_id, (SELECT COUNT(*) FROM notifications n WHERE n.user_id = st.user_id AND " +
+            "       CASE WHEN st.last_read_at IS NULL THEN n.is_read = false " +
+            "            WHEN n.read_changed_at > st.last_read_at THEN n.is_read = false " +
+            "            ELSE n.created_at > st.last_read_at END) AS unread " +
+            "   FROM notification_inbox_state st WHERE st.unread_count IS NOT NULL) c " +
+            "WHERE s.user_id = c.user_id AND s.unread_count <> c.unread", nativeQuery = true)
+    int reconcileUnreadCounts();
+}
@@ -0,0 +1,29 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.zone.zone01blog.entity.NotificationPreference;
+import com.zone.zone01blog.entity.NotificationPreferenceId;
+import com.zone.zone01blog.entity.NotificationType;
+
+@Repository
+public interface NotificationPreferenceRepository extends JpaRepository<NotificationPreference, NotificationPreferenceId> {
+
+    @Query("SELECT p.id.type FROM NotificationPreference p WHERE p.id.userId = :userId AND p.muted = true")
+    List<NotificationType> findMutedTypesByUserId(@Param("userId") String userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO notification_preferences (user_id, type, muted, updated_at) " +
+            "VALUES (:userId, :type, :muted, :updatedAt) " +
+            "ON CONFLICT (user_id, type) DO UPDATE SET muted = EXCLUDED.muted, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void upsert(@Param("userId") String userId, @Param("type") String type, @Param("muted") boolean muted,
+            @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -4,31 +4,74 @@ import com.zone.zone01blog.entity.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
-import java.util.List;
 
 @Repository
-public interface NotificationRepository extends JpaRepository<Notification, String> {
-
-    @Query("SELECT n FROM Notification n " +
-            "LEFT JOIN FETCH n.relatedUser " +
-            "WHERE n.user.id = :userId " +
-            "ORDER BY n.createdAt DESC")
-        List<Notification> findByUserIdWithRelatedUser(String userId);
+public interface NotificationRepository extends JpaRepository<Notification, String>, NotificationRepositoryCustom {
 
         long countByUserIdAndIsRead(String userId, boolean isRead);
 
         Optional<Notification> findByIdAndUserId(String id, String userId);
 
     @Modifying
-    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
-    void markAllAsReadByUserId(String userId);
-
-    @Query("SELECT n FROM Notification n " +
-            "LEFT JOIN FETCH n.relatedUser " +
-            "WHERE n.user.id = :userId AND n.isRead = false " +
-            "ORDER BY n.createdAt DESC")
-        List<Notification> findUnreadByUserId(String userId);
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") String userId);
+
+    interface GroupState {
+        String getId();
+        boolean getIsRead();
+        LocalDateTime getReadChangedAt();
+        LocalDateTime getCreatedAt();
+        int getActorCount();
+        String getRecentActorIds();
+    }
+
+    @Query("SELECT n.id AS id, n.isRead AS isRead, n.readChangedAt AS readChangedAt, n.createdAt AS createdAt, " +
+            "n.actorCount AS actorCount, n.recentActorIds AS recentActorIds " +
+            "FROM Notification n WHERE n.user.id = :userId AND n.groupKey = :groupKey")
+    Optional<GroupState> findGroupState(@Param("userId") String userId, @Param("groupKey") String groupKey);
+
+    // New group row, or fold one more actor into the existing one. The row moves to
+    // the top of the inbox and becomes unread again.
+    @Modifying
+    @Query(value = "INSERT INTO notifications (id, user_id, type, message, related_user_id, related_post_id, " +
+            "   is_read, created_at, group_key, actor_count, recent_actor_ids) " +
+            "VALUES (:id, :userId, :type, :message, :actorId, :postId, false, :createdAt, :groupKey, 1, :recentActorIds) " +
+            "ON CONFLICT (user_id, group_key) DO UPDATE SET " +
+            "   actor_count = notifications.actor_count + :newActors, " +
+            "   recent_actor_ids = EXCLUDED.recent_actor_ids, " +
+            "   related_user_id = EXCLUDED.related_user_id, " +
+            "   message = EXCLUDED.message, " +
+            "   created_at = EXCLUDED.created_at, " +
+            "   is_read = false, " +
+            "   read_changed_at = NULL", nativeQuery = true)
+    void upsertGrouped(@Param("id") String id, @Param("userId") String userId, @Param("type") String type,
+            @Param("message") String message, @Param("actorId") String actorId, @Param("postId") String postId,
+            @Param("createdAt") LocalDateTime createdAt, @Param("groupKey") String groupKey,
+            @Param("recentActorIds") String recentActorIds, @Param("newActors") int newActors);
+
+    // A pulled NEW_POST item stored as a row (see NewPostNotificationService), dated like its post
+    @Modifying
+    @Query(value = "INSERT INTO notifications (id, user_id, type, message, related_user_id, related_post_id, " +
+            "   is_read, read_changed_at, created_at) " +
+            "SELECT :id, :userId, 'NEW_POST', :message, :actorId, :postId, :read, :readChangedAt, :createdAt " +
+            "WHERE NOT EXISTS (SELECT 1 FROM notifications n " +
+            "   WHERE n.related_post_id = :postId AND n.user_id = :userId AND n.type = 'NEW_POST')", nativeQuery = true)
+    int insertNewPost(@Param("id") String id, @Param("userId") String userId, @Param("message") String message,
+            @Param("actorId") String actorId, @Param("postId") String postId, @Param("read") boolean read,
+            @Param("readChangedAt") LocalDateTime readChangedAt, @Param("createdAt") LocalDateTime createdAt);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.createdAt > :lastReadAt")
+    long countCreatedAfter(@Param("userId") String userId, @Param("lastReadAt") LocalDateTime lastReadAt);
+
+    // Net effect of per-notification toggles made after the watermark:
+    // +1 for an older one marked unread, -1 for a newer one marked read
+    @Query("SELECT COALESCE(SUM(CASE WHEN n.isRead = false THEN 1 ELSE -1 END), 0) FROM Notification n " +
+            "WHERE n.user.id = :userId AND n.readChangedAt > :lastReadAt " +
+            "AND ((n.isRead = false AND n.createdAt <= :lastReadAt) OR (n.isRead = true AND n.createdAt > :lastReadAt))")
+    long sumReadOverridesAfter(@Param("userId") String userId, @Param("lastReadAt") LocalDateTime lastReadAt);
 }
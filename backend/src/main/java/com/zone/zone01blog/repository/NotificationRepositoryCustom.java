@@ -0,0 +1,17 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.zone.zone01blog.dto.NotificationRow;
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.util.PageCursor;
+
+public interface NotificationRepositoryCustom {
+
+    // One inbox page, newest first. after, types and lastReadAt are optional;
+    // unreadOnly applies the read-watermark rules when lastReadAt is set.
+    List<NotificationRow> findInboxPage(String userId, PageCursor after, Collection<NotificationType> types,
+            boolean unreadOnly, LocalDateTime lastReadAt, int limit);
+}
@@ -0,0 +1,64 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.zone.zone01blog.dto.NotificationRow;
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.util.PageCursor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+// The inbox query has optional cursor, type and unread filters, so the JPQL is
+// assembled here instead of declaring a @Query for every combination.
+public class NotificationRepositoryImpl implements NotificationRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<NotificationRow> findInboxPage(String userId, PageCursor after, Collection<NotificationType> types,
+            boolean unreadOnly, LocalDateTime lastReadAt, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.zone.zone01blog.dto.NotificationRow(" +
+                "n.id, n.type, n.message, n.isRead, n.readChangedAt, n.createdAt, n.actorCount, n.recentActorIds, " +
+                "n.relatedPost.id, " +
+                "u.id, u.name, u.email, u.role, u.createdAt, u.updatedAt) " +
+                "FROM Notification n LEFT JOIN n.relatedUser u " +
+                "WHERE n.user.id = :userId");
+
+        if (after != null) {
+            jpql.append(" AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id))");
+        }
+        if (types != null && !types.isEmpty()) {
+            jpql.append(" AND n.type IN :types");
+        }
+        if (unreadOnly) {
+            if (lastReadAt == null) {
+                jpql.append(" AND n.isRead = false");
+            } else {
+                jpql.append(" AND ((n.readChangedAt > :lastReadAt AND n.isRead = false)" +
+                        " OR ((n.readChangedAt IS NULL OR n.readChangedAt <= :lastReadAt) AND n.createdAt > :lastReadAt))");
+            }
+        }
+        jpql.append(" ORDER BY n.createdAt DESC, n.id DESC");
+
+        TypedQuery<NotificationRow> query = entityManager.createQuery(jpql.toString(), NotificationRow.class)
+                .setParameter("userId", userId)
+                .setMaxResults(limit);
+        if (after != null) {
+            query.setParameter("createdAt", after.createdAt());
+            query.setParameter("id", after.id());
+        }
+        if (types != null && !types.isEmpty()) {
+            query.setParameter("types", types);
+        }
+        if (unreadOnly && lastReadAt != null) {
+            query.setParameter("lastReadAt", lastReadAt);
+        }
+        return query.getResultList();
+    }
+}
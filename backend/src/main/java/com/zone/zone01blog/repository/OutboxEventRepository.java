@@ -0,0 +1,38 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.zone.zone01blog.entity.OutboxEvent;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Locks a batch of due events. Only the oldest pending event of each ordering key
+    // is eligible, so a recipient's events are delivered in order even across retries
+    // and nodes. Rows locked by another poller are skipped, not waited for.
+    @Query(value = "SELECT * FROM outbox_events e " +
+            "WHERE e.failed_at IS NULL AND e.available_at <= :now " +
+            "AND NOT EXISTS (SELECT 1 FROM outbox_events p WHERE p.ordering_key = e.ordering_key " +
+            "   AND p.failed_at IS NULL AND p.id < e.id) " +
+            "ORDER BY e.id LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> claimBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Event claimed by the caller until leaseUntil, locked for delivery or a retry update.
+    // Empty once the lease ran out and another poller claimed it again.
+    @Query(value = "SELECT * FROM outbox_events WHERE id = :id AND available_at = :leaseUntil " +
+            "FOR UPDATE", nativeQuery = true)
+    Optional<OutboxEvent> lockClaimed(@Param("id") Long id, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Next pending event of a key whose head the caller holds
+    @Query(value = "SELECT * FROM outbox_events WHERE ordering_key = :key AND id > :afterId " +
+            "AND failed_at IS NULL ORDER BY id LIMIT 1 FOR UPDATE", nativeQuery = true)
+    Optional<OutboxEvent> findNextForKey(@Param("key") String orderingKey, @Param("afterId") Long afterId);
+}
@@ -1,7 +1,13 @@
 package com.zone.zone01blog.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -17,8 +23,15 @@ public interface PostRepository extends JpaRepository<Post, String> {
         List<Post> findByAuthorId(String authorId);
 
     // SOLUTION TO N+1 PROBLEM: Join fetch
-    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.hidden = false")
-    List<Post> findAllWithAuthors();
+    // Keyset pagination: first page, then "Before" = rows after the cursor in (createdAt DESC, id DESC) order
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.hidden = false " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findAllWithAuthors(Limit limit);
+
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.hidden = false " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findAllWithAuthorsBefore(LocalDateTime createdAt, String id, Limit limit);
 
     @Query("SELECT p FROM Post p JOIN FETCH p.author ORDER BY p.createdAt DESC")
     List<Post> findAllWithAuthorsIncludingHidden();
@@ -30,15 +43,77 @@ public interface PostRepository extends JpaRepository<Post, String> {
     @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.id = :id AND p.hidden = false")
     Post findVisibleByIdWithAuthor(String id);
 
-    // feed
-    @Query("SELECT p FROM Post p JOIN FETCH p.author " +
-            "WHERE p.author.id IN :followingIds AND p.hidden = false " +
-            "ORDER BY p.createdAt DESC")
-        List<Post> findFeedPostsByFollowingIds(List<String> followingIds);
+    // feed: see TimelineRepository
 
     // chi profile 
-    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.author.id = :userId AND p.hidden = false ORDER BY p.createdAt DESC")
-    List<Post> findByAuthorIdWithAuthor(String userId);
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.author.id = :userId AND p.hidden = false " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findByAuthorIdWithAuthor(String userId, Limit limit);
+
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.author.id = :userId AND p.hidden = false " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findByAuthorIdWithAuthorBefore(String userId, LocalDateTime createdAt, String id, Limit limit);
+
+    // profile stat: the posts the pages above list, all of them
+    long countByAuthorIdAndHiddenFalse(String userId);
+
+    // Home feed (TimelineService): authors among authorIds with posts not pushed to
+    // their followers' timelines
+    @Query("SELECT DISTINCT p.author.id FROM Post p WHERE p.author.id IN :authorIds AND p.pushed = false")
+    List<String> findAuthorIdsWithUnpushedPosts(List<String> authorIds);
+
+    // Unpushed posts of authors back at or below the push threshold. Followers are
+    // counted once per author, not per post, and only up to threshold + 1: authors
+    // above it keep their unpushed posts for good.
+    @Query(value = "SELECT a.user_id FROM (SELECT DISTINCT user_id FROM posts WHERE pushed = false) a " +
+            "WHERE NOT EXISTS (SELECT 1 FROM subscriptions s WHERE s.following_id = a.user_id " +
+            "   OFFSET :threshold)",
+            nativeQuery = true)
+    List<String> findAuthorIdsToPush(long threshold);
+
+    @Modifying
+    @Query(value = "UPDATE posts SET pushed = :pushed WHERE id = :id", nativeQuery = true)
+    int setPushed(String id, boolean pushed);
+
+    @Modifying
+    @Query(value = "UPDATE posts SET pushed = true WHERE user_id = :authorId AND pushed = false " +
+            "AND created_at <= :before", nativeQuery = true)
+    int markAuthorPostsPushed(String authorId, LocalDateTime before);
+
+    // NEW_POST notifications in pull mode (see NewPostNotificationService): posts of the
+    // followed authors newer than :since that the user has no stored NEW_POST row for
+    // and did not dismiss
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.author.id IN :authorIds AND p.hidden = false " +
+            "AND p.createdAt > :since " +
+            "AND NOT EXISTS (SELECT 1 FROM Notification n WHERE n.relatedPost = p AND n.user.id = :userId " +
+            "   AND n.type = com.zone.zone01blog.entity.NotificationType.NEW_POST) " +
+            "AND NOT EXISTS (SELECT 1 FROM NewPostDismissal d WHERE d.id.userId = :userId AND d.id.postId = p.id) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findNewPostsForInbox(String userId, Collection<String> authorIds, LocalDateTime since, Limit limit);
+
+    @Query("SELECT p FROM Post p JOIN FETCH p.author WHERE p.author.id IN :authorIds AND p.hidden = false " +
+            "AND p.createdAt > :since " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "AND NOT EXISTS (SELECT 1 FROM Notification n WHERE n.relatedPost = p AND n.user.id = :userId " +
+            "   AND n.type = com.zone.zone01blog.entity.NotificationType.NEW_POST) " +
+            "AND NOT EXISTS (SELECT 1 FROM NewPostDismissal d WHERE d.id.userId = :userId AND d.id.postId = p.id) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findNewPostsForInboxBefore(String userId, Collection<String> authorIds, LocalDateTime since,
+            LocalDateTime createdAt, String id, Limit limit);
+
+    // unordered, so the scan stops at the limit (a capped unread count)
+    @Query("SELECT p.id FROM Post p WHERE p.author.id IN :authorIds AND p.hidden = false " +
+            "AND p.createdAt > :since " +
+            "AND NOT EXISTS (SELECT 1 FROM Notification n WHERE n.relatedPost = p AND n.user.id = :userId " +
+            "   AND n.type = com.zone.zone01blog.entity.NotificationType.NEW_POST) " +
+            "AND NOT EXISTS (SELECT 1 FROM NewPostDismissal d WHERE d.id.userId = :userId AND d.id.postId = p.id)")
+    List<String> findNewPostIdsForInbox(String userId, Collection<String> authorIds, LocalDateTime since,
+            Limit limit);
+
+    // counters (see PostCounterService)
+    @Query("SELECT p.likeCount FROM Post p WHERE p.id = :id")
+    Optional<Long> findLikeCountById(String id);
 
     // private List<Post> posts = new ArrayList<>();
 
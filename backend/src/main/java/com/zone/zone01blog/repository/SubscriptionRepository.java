@@ -1,8 +1,10 @@
 package com.zone.zone01blog.repository;
 
 
+import com.zone.zone01blog.entity.NotificationType;
 import com.zone.zone01blog.entity.Subscription;
 import com.zone.zone01blog.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -24,6 +26,18 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Stri
     @Query("SELECT s.follower FROM Subscription s WHERE s.following.id = :userId")
     List<User> findFollowersByUserId(String userId);
 
+    @Query("SELECT s.following.id FROM Subscription s WHERE s.follower.id = :userId")
+    List<String> findFollowingIdsByUserId(String userId);
+
+    // follower ids in id order, one page at a time (NEW_POST fan-out), without the
+    // followers who muted the type
+    @Query("SELECT s.follower.id FROM Subscription s WHERE s.following.id = :userId " +
+            "AND s.follower.id > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM NotificationPreference np WHERE np.id.userId = s.follower.id " +
+            "   AND np.id.type = :type AND np.muted = true) " +
+            "ORDER BY s.follower.id")
+    List<String> findFollowerIdsToNotifyAfter(String userId, NotificationType type, String afterId, Limit limit);
+
         long countByFollowerId(String followerId);
 
         long countByFollowingId(String followingId);
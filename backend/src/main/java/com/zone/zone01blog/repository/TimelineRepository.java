@@ -0,0 +1,80 @@
+package com.zone.zone01blog.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.zone.zone01blog.entity.Post;
+import com.zone.zone01blog.entity.TimelineEntry;
+import com.zone.zone01blog.entity.TimelineEntryId;
+
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+    // Reading: keyset pages over the owner's rows, same ordering as PostRepository
+    @Query("SELECT p FROM TimelineEntry t JOIN t.post p JOIN FETCH p.author " +
+            "WHERE t.id.ownerId = :ownerId AND p.hidden = false " +
+            "ORDER BY t.postCreatedAt DESC, t.id.postId DESC")
+    List<Post> findTimelinePosts(String ownerId, Limit limit);
+
+    @Query("SELECT p FROM TimelineEntry t JOIN t.post p JOIN FETCH p.author " +
+            "WHERE t.id.ownerId = :ownerId AND p.hidden = false " +
+            "AND (t.postCreatedAt < :createdAt OR (t.postCreatedAt = :createdAt AND t.id.postId < :id)) " +
+            "ORDER BY t.postCreatedAt DESC, t.id.postId DESC")
+    List<Post> findTimelinePostsBefore(String ownerId, LocalDateTime createdAt, String id, Limit limit);
+
+        boolean existsByIdOwnerId(String ownerId);
+
+    // Writing: one statement per event, no entity loading
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, post_created_at) " +
+            "VALUES (:ownerId, :postId, :authorId, :createdAt) ON CONFLICT DO NOTHING", nativeQuery = true)
+    void insertEntry(String ownerId, String postId, String authorId, LocalDateTime createdAt);
+
+    // push a new post to every follower of its author
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, post_created_at) " +
+            "SELECT s.follower_id, :postId, :authorId, :createdAt FROM subscriptions s " +
+            "WHERE s.following_id = :authorId ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutToFollowers(String postId, String authorId, LocalDateTime createdAt);
+
+    // an author back under the push threshold: the recent posts that were pulled go to
+    // every follower (see TimelineService.pushPulledAuthors)
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, post_created_at) " +
+            "SELECT s.follower_id, p.id, p.user_id, p.created_at FROM (" +
+            "   SELECT id, user_id, created_at FROM posts WHERE user_id = :authorId AND pushed = false " +
+            "   AND hidden = false AND created_at <= :before ORDER BY created_at DESC LIMIT :maxPosts) p " +
+            "JOIN subscriptions s ON s.following_id = p.user_id ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutUnpushedPosts(String authorId, LocalDateTime before, int maxPosts);
+
+    // after a follow: copy the most recent posts of the followed author
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, post_created_at) " +
+            "SELECT :ownerId, p.id, p.user_id, p.created_at FROM posts p " +
+            "WHERE p.user_id = :authorId AND p.hidden = false " +
+            "ORDER BY p.created_at DESC LIMIT :maxPosts ON CONFLICT DO NOTHING", nativeQuery = true)
+    int backfillFromAuthor(String ownerId, String authorId, int maxPosts);
+
+    // first read of a timeline that never received pushes (e.g. accounts older than this table)
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, author_id, post_created_at) " +
+            "SELECT :ownerId, p.id, p.user_id, p.created_at FROM posts p " +
+            "WHERE p.hidden = false AND (p.user_id = :ownerId OR p.user_id IN " +
+            "(SELECT s.following_id FROM subscriptions s WHERE s.follower_id = :ownerId)) " +
+            "ORDER BY p.created_at DESC LIMIT :maxPosts ON CONFLICT DO NOTHING", nativeQuery = true)
+    int rebuild(String ownerId, int maxPosts);
+
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.id.ownerId = :ownerId AND t.authorId = :authorId")
+    int deleteByOwnerAndAuthor(String ownerId, String authorId);
+
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.id.postId = :postId")
+    int deleteByPostId(String postId);
+}
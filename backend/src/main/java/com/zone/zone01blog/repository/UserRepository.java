@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.zone.zone01blog.entity.User;
+import com.zone.zone01blog.security.UserSecurityState;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
@@ -28,6 +29,12 @@ public interface UserRepository extends JpaRepository<User, String> {
         List<User> findUsersNotFollowed(@Param("userId") String userId);
 
         long countByRole(String role);
+
+    // what JwtAuthenticationFilter checks, without loading the whole entity
+    @Query("SELECT new com.zone.zone01blog.security.UserSecurityState(u.banned, u.suspended, COALESCE(u.tokenVersion, 0L)) " +
+            "FROM User u WHERE u.id = :id")
+    Optional<UserSecurityState> findSecurityStateById(@Param("id") String id);
+
     //OR
     // Optional<User> findByEmail(String email);
     // Spring JPA/DATA will create a JPQL ==> SELECT u FROM User u WHERE u.email = ?1
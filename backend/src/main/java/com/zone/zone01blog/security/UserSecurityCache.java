@@ -0,0 +1,45 @@
+package com.zone.zone01blog.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zone.zone01blog.repository.UserRepository;
+import com.zone.zone01blog.util.TtlCache;
+
+// Caches UserSecurityState per user id so JwtAuthenticationFilter doesn't load the
+// user on every request. Anything that bans, suspends or bumps the token version
+// must call evict(). The TTL bounds staleness when another instance made the change.
+@Component
+public class UserSecurityCache {
+
+    private final UserRepository userRepository;
+    private final TtlCache<String, UserSecurityState> cache;
+
+    public UserSecurityCache(UserRepository userRepository,
+            @Value("${security.user-state-cache.max-size:10000}") int maxSize,
+            @Value("${security.user-state-cache.ttl-ms:30000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.cache = new TtlCache<>(maxSize, ttlMillis);
+    }
+
+    // null when the user doesn't exist (not cached)
+    public UserSecurityState get(String userId) {
+        return cache.get(userId, id -> userRepository.findSecurityStateById(id).orElse(null));
+    }
+
+    // Evicts now and again after the caller's transaction commits, so a request running
+    // in between can't put the old state back for a whole TTL
+    public void evict(String userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.zone.zone01blog.security;
+
+// The only user fields the JWT filter needs on every request
+public record UserSecurityState(boolean banned, boolean suspended, long tokenVersion) {
+}
@@ -52,4 +52,15 @@ public class AuthService {
 
         return new LoginResponse(token, createdUser);
     }
+
+    // Ticket for GET /api/v1/notifications/stream, carrying the current token version
+    // so revoking the user's tokens revokes it too
+    public String createStreamTicket(String userId, String role) {
+        User user = userService.getUserEntityById(userId);
+        return jwtUtil.generateStreamTicket(userId, role, user.getTokenVersionSafe());
+    }
+
+    public long getStreamTicketTtlMillis() {
+        return jwtUtil.getStreamTicketTtlMillis();
+    }
 }
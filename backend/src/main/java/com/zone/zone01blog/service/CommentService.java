@@ -28,16 +28,19 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
     private final UserService userService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final PostCounterService postCounterService;
 
     public CommentService(CommentRepository commentRepository,
             PostRepository postRepository,
             UserService userService,
-            NotificationService notificationService) {
+            OutboxService outboxService,
+            PostCounterService postCounterService) {
         this.commentRepository = commentRepository;
         this.postRepository = postRepository;
         this.userService = userService;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
+        this.postCounterService = postCounterService;
     }
 
     public List<CommentDTO> getCommentsByPostId(String postId) {
@@ -65,15 +68,16 @@ public class CommentService {
                 .build();
 
         Comment savedComment = commentRepository.save(comment);
+        postCounterService.recordComment(postId, 1);
 
         if (!post.getAuthor().getId().equals(userId)) {
             String message = author.getName() + " commented on your post: " + post.getTitle();
-            notificationService.createNotification(
-                    post.getAuthor(),
+            outboxService.enqueueNotification(
+                    post.getAuthor().getId(),
                     NotificationType.POST_COMMENT,
                     message,
-                    author,
-                    post);
+                    userId,
+                    post.getId());
         }
 
         return convertToDTO(savedComment);
@@ -107,10 +111,9 @@ public class CommentService {
         }
 
         commentRepository.deleteById(commentId);
-    }
-
-    public long getCommentCount(String postId) {
-        return commentRepository.countByPostIdAndHiddenFalse(postId);
+        if (!comment.isHidden()) {
+            postCounterService.recordComment(comment.getPost().getId(), -1);
+        }
     }
 
 
@@ -1,32 +1,91 @@
 package com.zone.zone01blog.service;
 
+import com.zone.zone01blog.entity.MediaFile;
 import com.zone.zone01blog.exception.FileStorageException;
 import com.zone.zone01blog.exception.InvalidFileException;
+import com.zone.zone01blog.repository.MediaFileRepository;
+import com.zone.zone01blog.util.ExifOrientation;
+import com.zone.zone01blog.util.TtlCache;
 import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.UUID;
+import java.util.Map;
 
+// Uploads on local disk. Content type (Tika), size, SHA-256 and image dimensions are
+// worked out once in storeFile and kept in media_files; downloads read them through
+// an in-memory cache. Files stored before media_files existed get their row on first
+// download.
+// Blobs are content-addressed (<sha256><ext>): uploading bytes that are already
+// stored adds a reference instead of a second copy. media_files.ref_count counts the
+// posts using a blob, storeFile and release move it, MediaSweeperService deletes
+// blobs that stayed unreferenced. Older UUID-named files are served and released as
+// before.
+// Files live in two levels of shard directories named after the first four
+// characters of the filename (ab/cd/abcd...), a few thousand entries per directory
+// at most. Files from the flat layout are still found until MediaShardMigrationService
+// has moved them all and left FLAT_LAYOUT_MIGRATED behind.
 @Service
 public class FileStorageService {
 
     private final Path fileStorageLocation;
+    // uploads in progress, same file system so the final move is atomic
+    private final Path tempLocation;
+    // downscaled renditions, see MediaVariantService
+    private final Path variantLocation;
+    // false once no file is left in the flat layout: misses then cost one lookup
+    private volatile boolean flatFallback;
     private final Tika tika = new Tika();
+    private final MediaFileRepository mediaFileRepository;
+    private final TtlCache<String, MediaMetadata> metadataCache;
+    // blob registration commits on its own, see storeFile
+    private final TransactionTemplate blobTransaction;
+    // release and purge hold the blob's lock in the caller's transaction, or their own
+    private final TransactionTemplate lockTransaction;
+
+    // posts.media_url is this followed by the stored filename
+    public static final String MEDIA_URL_PREFIX = "/api/v1/media/";
+
+    private static final String VARIANT_DIRECTORY = "variants";
+    // marker in the upload directory, written when the shard migration is done
+    private static final String FLAT_LAYOUT_MIGRATED = ".flat-layout-migrated";
+    private static final int SHARD_PREFIX_LENGTH = 4;
 
     private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
 
@@ -36,95 +95,509 @@ public class FileStorageService {
     private static final List<String> ALLOWED_VIDEO_TYPES = Arrays.asList(
             "video/mp4", "video/avi", "video/x-msvideo", "video/mov", "video/quicktime", "video/webm");
 
+    // stored names only depend on the content type, never on the client's filename
+    private static final Map<String, String> EXTENSIONS = Map.ofEntries(
+            Map.entry("image/jpeg", ".jpg"), Map.entry("image/jpg", ".jpg"),
+            Map.entry("image/png", ".png"), Map.entry("image/gif", ".gif"),
+            Map.entry("image/webp", ".webp"), Map.entry("video/mp4", ".mp4"),
+            Map.entry("video/avi", ".avi"), Map.entry("video/x-msvideo", ".avi"),
+            Map.entry("video/mov", ".mov"), Map.entry("video/quicktime", ".mov"),
+            Map.entry("video/webm", ".webm"));
+
     private static final long MAX_IMAGE_SIZE = 10 * 1024 * 1024; // 10MB
     private static final long MAX_VIDEO_SIZE = 50 * 1024 * 1024; // 50MB
 
-    public FileStorageService(@Value("${file.upload-dir}") String uploadDir) {
+    // longest edge of the placeholder image; about 200 bytes as a PNG data URI
+    private static final int PLACEHOLDER_SIZE = 10;
+    // the source is decoded subsampled to about this many times the placeholder
+    private static final int PLACEHOLDER_DECODE_FACTOR = 8;
+
+    // enough for Tika's magic-byte detection of the allowed formats
+    private static final int SNIFF_SIZE = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public FileStorageService(@Value("${file.upload-dir}") String uploadDir,
+            MediaFileRepository mediaFileRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${media.metadata.cache-max-size:10000}") int metadataCacheMaxSize,
+            @Value("${media.metadata.cache-ttl-ms:3600000}") long metadataCacheTtlMillis) {
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.tempLocation = this.fileStorageLocation.resolve(".tmp");
+        this.variantLocation = this.fileStorageLocation.resolve(VARIANT_DIRECTORY);
+        this.mediaFileRepository = mediaFileRepository;
+        this.metadataCache = new TtlCache<>(metadataCacheMaxSize, metadataCacheTtlMillis);
+        this.blobTransaction = new TransactionTemplate(transactionManager);
+        this.blobTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lockTransaction = new TransactionTemplate(transactionManager);
 
         try {
             Files.createDirectories(this.fileStorageLocation);
+            this.flatFallback = !Files.exists(this.fileStorageLocation.resolve(FLAT_LAYOUT_MIGRATED));
         } catch (IOException ex) {
             throw new FileStorageException("Could not create upload directory", ex);
         }
     }
 
+    // Single pass over the upload: the first SNIFF_SIZE bytes decide the type (Tika) and
+    // the size limit before anything is written, then the stream goes to a temp file
+    // while being hashed and counted. The hash names the blob: a new one is moved into
+    // place, a known one only drops the temp file. A disallowed type costs one small
+    // read, an oversize file stops at the limit.
+    // The blob is registered in its own transaction (at ref_count 0 if new, and touched
+    // so the sweeper leaves it alone for a grace period); the returned file counts as
+    // one reference in the caller's transaction. If the caller rolls back, the blob is
+    // left unreferenced and the sweeper reclaims it.
     public StoredFile storeFile(MultipartFile file) {
-        String contentType = validateFile(file);
+        if (file.isEmpty()) {
+            throw new InvalidFileException("File is empty");
+        }
 
-        // Generate unique filename
         String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExtension = getFileExtension(originalFilename);
-        String newFilename = UUID.randomUUID().toString() + fileExtension;
-
-        try {
-            // Check for invalid characters
-            if (newFilename.contains("..")) {
-                throw new InvalidFileException("Filename contains invalid path sequence: " + newFilename);
+        Path tempFile = null;
+        try (InputStream in = file.getInputStream()) {
+            byte[] head = in.readNBytes(SNIFF_SIZE);
+            String contentType = normalizeContentType(tika.detect(head, originalFilename));
+            long maxSize = maxSizeFor(contentType);
+            if (file.getSize() > maxSize) {
+                throw tooLarge(contentType);
             }
 
-            // Copy file to storage location
-            Path targetLocation = this.fileStorageLocation.resolve(newFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(tempLocation);
+            tempFile = Files.createTempFile(tempLocation, "upload-", ".tmp");
+            MessageDigest digest = sha256();
+            long size = head.length;
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                digest.update(head);
+                out.write(head);
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    // the declared size can't be trusted for the limit
+                    if (size > maxSize) {
+                        throw tooLarge(contentType);
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
 
-            return new StoredFile(newFilename, contentType);
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String newFilename = sha256 + EXTENSIONS.getOrDefault(contentType, "");
+            StoredFile stored = registerBlob(newFilename, tempFile, contentType, size, sha256);
+            mediaFileRepository.acquire(newFilename, LocalDateTime.now());
+            return stored;
         } catch (IOException ex) {
-            throw new FileStorageException("Could not store file " + newFilename, ex);
+            throw new FileStorageException("Could not store file " + originalFilename, ex);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    // Under the blob's lock, so the sweeper can't delete it in between and two uploads
+    // of the same bytes don't both move a file into place
+    // A known blob's dimensions and placeholder come from its row, no image is decoded
+    private StoredFile registerBlob(String filename, Path tempFile, String contentType, long size, String sha256) {
+        return blobTransaction.execute(status -> {
+            mediaFileRepository.lockBlob(filename);
+            Path existing = locate(filename);
+            Path target = existing != null ? existing : shardedPath(filename);
+            boolean known = mediaFileRepository.touch(filename, LocalDateTime.now()) > 0;
+            try {
+                // a row whose file is gone (sweeper failed half way) gets it back
+                if (!known || existing == null) {
+                    moveIntoPlace(tempFile, target);
+                }
+            } catch (IOException ex) {
+                throw new FileStorageException("Could not store file " + filename, ex);
+            }
+            if (!known) {
+                String placeholder = ALLOWED_IMAGE_TYPES.contains(contentType) ? createPlaceholder(target) : null;
+                saveMetadata(target, contentType, size, sha256, placeholder, 0);
+            }
+            MediaFile mediaFile = mediaFileRepository.findById(filename)
+                    .orElseThrow(() -> new FileStorageException("Could not record file: " + filename));
+            return new StoredFile(filename, contentType, mediaFile.getWidth(), mediaFile.getHeight(),
+                    mediaFile.getPlaceholder());
+        });
+    }
+
+    private static long maxSizeFor(String contentType) {
+        if (ALLOWED_IMAGE_TYPES.contains(contentType)) {
+            return MAX_IMAGE_SIZE;
         }
+        if (ALLOWED_VIDEO_TYPES.contains(contentType)) {
+            return MAX_VIDEO_SIZE;
+        }
+        throw new InvalidFileException("File type not allowed. Allowed types: JPG, PNG, GIF, WEBP, MP4, AVI, MOV, WEBM");
     }
 
-    public Resource loadFileAsResource(String filename) {
+    private static InvalidFileException tooLarge(String contentType) {
+        return ALLOWED_IMAGE_TYPES.contains(contentType)
+                ? new InvalidFileException("Image size exceeds maximum allowed size (10MB)")
+                : new InvalidFileException("Video size exceeds maximum allowed size (50MB)");
+    }
+
+    // readers see either no file or the complete one
+    public static void moveIntoPlace(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
         try {
-            Path filePath = this.fileStorageLocation.resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            if (resource.exists()) {
-                return resource;
-            } else {
-                throw new FileStorageException("File not found: " + filename);
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a leftover temp file is harmless
+        }
+    }
+
+    // "ab/cd/" for a filename starting with abcd; names that can't be sharded (too
+    // short, other characters) stay at the top level
+    public static String shardDirectory(String filename) {
+        if (filename.length() <= SHARD_PREFIX_LENGTH) {
+            return "";
+        }
+        for (int i = 0; i < SHARD_PREFIX_LENGTH; i++) {
+            char c = filename.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'z')) {
+                return "";
             }
-        } catch (MalformedURLException ex) {
-            throw new FileStorageException("File not found: " + filename, ex);
         }
+        return filename.substring(0, 2) + "/" + filename.substring(2, SHARD_PREFIX_LENGTH) + "/";
+    }
+
+    public Path getStorageLocation() {
+        return fileStorageLocation;
+    }
+
+    public Path getVariantLocation() {
+        return variantLocation;
+    }
+
+    public Path shardedPath(String filename) {
+        return fileStorageLocation.resolve(shardDirectory(filename) + filename).normalize();
+    }
+
+    // Sharded first. In the flat layout, then sharded again: the migration may have
+    // moved the file between the two lookups.
+    private Path locate(String filename) {
+        // .tmp, the migration marker
+        if (filename.startsWith(".")) {
+            return null;
+        }
+        Path sharded = shardedPath(filename);
+        if (Files.isRegularFile(sharded)) {
+            return sharded;
+        }
+        if (!flatFallback) {
+            return null;
+        }
+        Path flat = fileStorageLocation.resolve(filename).normalize();
+        if (Files.isRegularFile(flat)) {
+            return flat;
+        }
+        return Files.isRegularFile(sharded) ? sharded : null;
+    }
+
+    public boolean isFlatFallbackEnabled() {
+        return flatFallback;
+    }
+
+    // Called by the migration once the flat layout is empty, here and for later starts
+    public void markFlatLayoutMigrated() throws IOException {
+        Path marker = fileStorageLocation.resolve(FLAT_LAYOUT_MIGRATED);
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+        }
+        flatFallback = false;
+    }
+
+    // Stored name of the rendition of filename at the given width, relative to the
+    // upload directory so resolveFile serves it like any other file
+    public String variantFilename(String filename, int width) {
+        int dot = filename.lastIndexOf('.');
+        String base = dot < 0 ? filename : filename.substring(0, dot);
+        String extension = dot < 0 ? "" : filename.substring(dot);
+        String name = base + "_w" + width + extension;
+        return VARIANT_DIRECTORY + "/" + shardDirectory(name) + name;
+    }
+
+    // Stored name a variant was made from, the reverse of variantFilename; null for
+    // names that aren't variant names
+    public static String sourceFilename(String variantName) {
+        String name = variantName.substring(variantName.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        int marker = base.lastIndexOf("_w");
+        if (marker < 0 || marker + 2 == base.length()) {
+            return null;
+        }
+        for (int i = marker + 2; i < base.length(); i++) {
+            if (!Character.isDigit(base.charAt(i))) {
+                return null;
+            }
+        }
+        return base.substring(0, marker) + (dot < 0 ? "" : name.substring(dot));
+    }
+
+    // Moves a generated variant of filename into place under the blob's lock. False,
+    // and nothing moved, when the blob was purged meanwhile: its variants are gone too.
+    public boolean storeVariant(String filename, Path temp, Path target) {
+        return Boolean.TRUE.equals(lockTransaction.execute(status -> {
+            mediaFileRepository.lockBlob(filename);
+            if (locate(filename) == null) {
+                return false;
+            }
+            try {
+                moveIntoPlace(temp, target);
+            } catch (IOException ex) {
+                throw new FileStorageException("Could not store variant " + target.getFileName(), ex);
+            }
+            return true;
+        }));
+    }
+
+    // Where a variant is written: a temp file in the variant directory, then moved into its shard
+    public Path createVariantTempFile() throws IOException {
+        Files.createDirectories(variantLocation);
+        return Files.createTempFile(variantLocation, "variant-", ".tmp");
+    }
+
+    public Path variantPath(String variantFilename) {
+        Path filePath = this.fileStorageLocation.resolve(variantFilename).normalize();
+        if (!filePath.startsWith(variantLocation)) {
+            throw new FileStorageException("File not found: " + variantFilename);
+        }
+        return filePath;
     }
 
-    public void deleteFile(String filename) {
+    // A variant name is already a path (see variantFilename), a stored name is looked
+    // up in its shard
+    public Path resolveFile(String filename) {
+        Path filePath = filename.startsWith(VARIANT_DIRECTORY + "/")
+                ? this.fileStorageLocation.resolve(filename).normalize()
+                : locate(filename);
+        // nothing outside the upload directory, whatever the name contains
+        if (filePath == null || !filePath.startsWith(this.fileStorageLocation) || !Files.isRegularFile(filePath)) {
+            throw new FileStorageException("File not found: " + filename);
+        }
+        return filePath;
+    }
+
+    // Metadata of a stored file, from the cache when possible
+    public MediaMetadata getMetadata(String filename) {
+        MediaMetadata cached = metadataCache.getIfPresent(filename);
+        if (cached != null) {
+            return cached;
+        }
+        Path file = resolveFile(filename);
+        MediaMetadata metadata = mediaFileRepository.findById(filename)
+                .map(FileStorageService::toMetadata)
+                .orElseGet(() -> backfillMetadata(file));
+        metadataCache.put(filename, metadata);
+        return metadata;
+    }
+
+    // file stored before media_files existed: analysed once, then like any other
+    private MediaMetadata backfillMetadata(Path file) {
+        String contentType = detectContentType(file);
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException ex) {
+            throw new FileStorageException("Could not read file: " + file.getFileName(), ex);
+        }
+        // ref_count is set from the posts by the sweeper's reconcile
+        saveMetadata(file, contentType, size(file), HexFormat.of().formatHex(digest.digest()), null, 0);
+        return mediaFileRepository.findById(file.getFileName().toString())
+                .map(FileStorageService::toMetadata)
+                .orElseThrow(() -> new FileStorageException("Could not record file: " + file.getFileName()));
+    }
+
+    private void saveMetadata(Path file, String contentType, long size, String sha256, String placeholder,
+            int refCount) {
+        int[] dimensions = ALLOWED_IMAGE_TYPES.contains(contentType) ? readDimensions(file) : null;
+        mediaFileRepository.insertIfAbsent(
+                file.getFileName().toString(),
+                contentType,
+                size,
+                sha256,
+                dimensions == null ? null : dimensions[0],
+                dimensions == null ? null : dimensions[1],
+                placeholder,
+                refCount,
+                LocalDateTime.now());
+    }
+
+    private static long size(Path file) {
         try {
-            Path filePath = this.fileStorageLocation.resolve(filename).normalize();
-            Files.deleteIfExists(filePath);
+            return Files.size(file);
         } catch (IOException ex) {
-            throw new FileStorageException("Could not delete file: " + filename, ex);
+            throw new FileStorageException("Could not read file: " + file.getFileName(), ex);
         }
     }
 
-    private String validateFile(MultipartFile file) {
-        if (file.isEmpty()) {
-            throw new InvalidFileException("File is empty");
+    // From the image header, the pixels are not decoded. As displayed: a JPEG whose EXIF
+    // orientation turns it a quarter has width and height swapped.
+    private static int[] readDimensions(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                return ExifOrientation.swapsDimensions(ExifOrientation.read(file))
+                        ? new int[] { height, width }
+                        : new int[] { width, height };
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException ex) {
+            return null;
         }
+    }
 
-        String contentType = detectContentType(file);
-        long fileSize = file.getSize();
+    // Low-quality placeholder: the image shrunk to PLACEHOLDER_SIZE on its longest edge,
+    // as a PNG data URI clients paint (blurred) until the image arrives. Decoded with
+    // subsampling, so a large photo costs a fraction of a full decode.
+    private static String createPlaceholder(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            BufferedImage decoded;
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / (PLACEHOLDER_SIZE * PLACEHOLDER_DECODE_FACTOR));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+            decoded = ExifOrientation.apply(decoded, ExifOrientation.read(file));
 
-        if (ALLOWED_IMAGE_TYPES.contains(contentType)) {
-            if (fileSize > MAX_IMAGE_SIZE) {
-                throw new InvalidFileException("Image size exceeds maximum allowed size (10MB)");
+            double scale = (double) PLACEHOLDER_SIZE / Math.max(decoded.getWidth(), decoded.getHeight());
+            int width = Math.max(1, (int) Math.round(decoded.getWidth() * Math.min(1, scale)));
+            int height = Math.max(1, (int) Math.round(decoded.getHeight() * Math.min(1, scale)));
+            BufferedImage placeholder = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = placeholder.createGraphics();
+            try {
+                g.drawImage(decoded.getScaledInstance(width, height, Image.SCALE_AREA_AVERAGING),
+                        0, 0, Color.WHITE, null);
+            } finally {
+                g.dispose();
             }
-        } else if (ALLOWED_VIDEO_TYPES.contains(contentType)) {
-            if (fileSize > MAX_VIDEO_SIZE) {
-                throw new InvalidFileException("Video size exceeds maximum allowed size (50MB)");
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            if (!ImageIO.write(placeholder, "png", png)) {
+                return null;
             }
-        } else {
-            throw new InvalidFileException("File type not allowed. Allowed types: JPG, PNG, GIF, WEBP, MP4, AVI, MOV, WEBM");
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(png.toByteArray());
+        } catch (IOException | RuntimeException ex) {
+            return null;
         }
-        return contentType;
     }
 
-    private String getFileExtension(String filename) {
-        int lastDotIndex = filename.lastIndexOf('.');
-        if (lastDotIndex == -1) {
-            return "";
+    private static MediaMetadata toMetadata(MediaFile mediaFile) {
+        return new MediaMetadata(
+                mediaFile.getFilename(),
+                mediaFile.getContentType(),
+                mediaFile.getSizeBytes(),
+                mediaFile.getSha256(),
+                mediaFile.getWidth(),
+                mediaFile.getHeight(),
+                mediaFile.getCreatedAt());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    // Drops one reference. The blob itself goes when the sweeper finds it unreferenced
+    // past the grace period. A file without a row predates media_files and belongs to
+    // this post alone, it is deleted right away. Under the blob's lock, like uploads,
+    // the sweeper and the shard migration.
+    public void release(String filename) {
+        lockTransaction.executeWithoutResult(status -> {
+            mediaFileRepository.lockBlob(filename);
+            if (mediaFileRepository.release(filename, LocalDateTime.now()) == 0) {
+                deleteFiles(filename);
+            }
+        });
+    }
+
+    // Removes the file from disk; the caller has made sure nothing references it
+    public void purge(String filename) {
+        lockTransaction.executeWithoutResult(status -> {
+            mediaFileRepository.lockBlob(filename);
+            deleteFiles(filename);
+        });
+    }
+
+    private void deleteFiles(String filename) {
+        try {
+            Path filePath = this.fileStorageLocation.resolve(filename).normalize();
+            Path sharded = shardedPath(filename);
+            if (!filePath.startsWith(this.fileStorageLocation) || !sharded.startsWith(this.fileStorageLocation)) {
+                throw new FileStorageException("File not found: " + filename);
+            }
+            Files.deleteIfExists(sharded);
+            Files.deleteIfExists(filePath);
+            metadataCache.invalidate(filename);
+            deleteVariants(filename);
+        } catch (IOException ex) {
+            throw new FileStorageException("Could not delete file: " + filename, ex);
+        }
+    }
+
+    // All widths, in the variant's shard and, until the migration is done, at the top
+    private void deleteVariants(String filename) throws IOException {
+        Path widthZero = variantPath(variantFilename(filename, 0));
+        Path shard = widthZero.getParent();
+        String name = widthZero.getFileName().toString();
+        String prefix = name.substring(0, name.lastIndexOf("_w") + 2);
+        deleteMatching(shard, prefix);
+        if (flatFallback && !shard.equals(variantLocation)) {
+            deleteMatching(variantLocation, prefix);
+        }
+    }
+
+    private static void deleteMatching(Path directory, String prefix) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                file -> file.getFileName().toString().startsWith(prefix))) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
         }
-        return filename.substring(lastDotIndex);
     }
 
     public String getMediaType(String contentType) {
@@ -137,18 +610,9 @@ public class FileStorageService {
         return "unknown";
     }
 
-    public String detectContentType(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream()) {
-            String detected = tika.detect(inputStream, file.getOriginalFilename());
-            return normalizeContentType(detected);
-        } catch (IOException ex) {
-            throw new FileStorageException("Could not detect file type", ex);
-        }
-    }
-
-    public String detectContentType(Resource resource) {
-        try (InputStream inputStream = resource.getInputStream()) {
-            String detected = tika.detect(inputStream, resource.getFilename());
+    private String detectContentType(Path file) {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+            String detected = tika.detect(inputStream, file.getFileName().toString());
             return normalizeContentType(detected);
         } catch (IOException ex) {
             return DEFAULT_CONTENT_TYPE;
@@ -163,6 +627,22 @@ public class FileStorageService {
         return baseType.isEmpty() ? DEFAULT_CONTENT_TYPE : baseType;
     }
 
-    public record StoredFile(String filename, String contentType) {
+    // width/height/placeholder are null for videos and unreadable images
+    public record StoredFile(String filename, String contentType, Integer width, Integer height,
+            String placeholder) {
+    }
+
+    // width/height are null when unknown
+    public record MediaMetadata(String filename, String contentType, long sizeBytes, String sha256,
+            Integer width, Integer height, LocalDateTime createdAt) {
+
+        // strong validator: a stored file's content never changes
+        public String etag() {
+            return "\"" + sha256 + "\"";
+        }
+
+        public long lastModifiedMillis() {
+            return createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
     }
 }
@@ -10,7 +10,10 @@ import com.zone.zone01blog.repository.PostRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -20,16 +23,19 @@ public class LikeService {
     private final LikeRepository likeRepository;
     private final PostRepository postRepository;
     private final UserService userService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final PostCounterService postCounterService;
 
     public LikeService(LikeRepository likeRepository,
             PostRepository postRepository,
             UserService userService,
-            NotificationService notificationService) {
+            OutboxService outboxService,
+            PostCounterService postCounterService) {
         this.likeRepository = likeRepository;
         this.postRepository = postRepository;
         this.userService = userService;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
+        this.postCounterService = postCounterService;
     }
 
     public boolean toggleLike(String postId, String userId) {
@@ -40,6 +46,7 @@ public class LikeService {
 
         if (existingLike.isPresent()) {
             likeRepository.delete(existingLike.get());
+            postCounterService.recordLike(postId, -1);
             return false;
         } else {
             User user = userService.getUserEntityById(userId);
@@ -51,15 +58,16 @@ public class LikeService {
                     .build();
 
             likeRepository.save(newLike);
+            postCounterService.recordLike(postId, 1);
 
             if (!post.getAuthor().getId().equals(userId)) {
                 String message = user.getName() + " liked your post: " + post.getTitle();
-                notificationService.createNotification(
-                        post.getAuthor(),
+                outboxService.enqueueNotification(
+                        post.getAuthor().getId(),
                         NotificationType.POST_LIKE,
                         message,
-                        user,
-                        post);
+                        userId,
+                        post.getId());
             }
 
             return true;
@@ -71,6 +79,13 @@ public class LikeService {
     }
 
     public long getLikeCount(String postId) {
-        return likeRepository.countByPostId(postId);
+        return postCounterService.getLikeCount(postId);
+    }
+
+    public Set<String> getLikedPostIds(String userId, Collection<String> postIds) {
+        if (userId == null || postIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(likeRepository.findLikedPostIds(userId, postIds));
     }
 }
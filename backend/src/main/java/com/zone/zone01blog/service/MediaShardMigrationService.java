@@ -0,0 +1,152 @@
+package com.zone.zone01blog.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.repository.MediaFileRepository;
+
+// Moves files from the flat upload layout into their shard directories (see
+// FileStorageService), batch-size files per run, while the application serves them:
+// a file is found at either place during the move. Each blob is moved under its
+// advisory lock, so an upload of the same bytes or the sweeper never sees it half
+// way. Variants are moved too, under the lock of the blob they were made from.
+// Once a run finds nothing left, the flat fallback is switched off and the marker
+// keeps it off on later starts; other instances drop their fallback on their next
+// start.
+@Service
+public class MediaShardMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaShardMigrationService.class);
+
+    private final FileStorageService fileStorageService;
+    private final MediaFileRepository mediaFileRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public MediaShardMigrationService(FileStorageService fileStorageService,
+            MediaFileRepository mediaFileRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${media.sharding.migration.enabled:true}") boolean enabled,
+            @Value("${media.sharding.migration.batch-size:1000}") int batchSize) {
+        this.fileStorageService = fileStorageService;
+        this.mediaFileRepository = mediaFileRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${media.sharding.migration.interval-ms:10000}",
+            initialDelayString = "${media.sharding.migration.initial-delay-ms:60000}")
+    public void migrateBatch() {
+        if (!enabled || !fileStorageService.isFlatFallbackEnabled()) {
+            return;
+        }
+        try {
+            List<Path> blobs = findFlatFiles(fileStorageService.getStorageLocation(), batchSize);
+            List<Path> variants = findFlatFiles(fileStorageService.getVariantLocation(), batchSize - blobs.size());
+            if (blobs.isEmpty() && variants.isEmpty()) {
+                fileStorageService.markFlatLayoutMigrated();
+                log.info("Upload directory migrated to the sharded layout");
+                return;
+            }
+
+            int moved = 0;
+            for (Path blob : blobs) {
+                if (moveBlob(blob)) {
+                    moved++;
+                }
+            }
+            for (Path variant : variants) {
+                if (moveVariant(variant)) {
+                    moved++;
+                }
+            }
+            log.info("Moved {} media files to the sharded layout", moved);
+        } catch (IOException ex) {
+            log.warn("Shard migration batch failed", ex);
+        }
+    }
+
+    private boolean moveBlob(Path flat) {
+        String filename = flat.getFileName().toString();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                mediaFileRepository.lockBlob(filename);
+                try {
+                    // deleted by the sweeper, or already moved, in the meantime
+                    if (Files.isRegularFile(flat)) {
+                        FileStorageService.moveIntoPlace(flat, fileStorageService.shardedPath(filename));
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Could not move {} to its shard", filename, ex);
+            return false;
+        }
+    }
+
+    // A name that isn't a variant's is moved without a lock: no blob it could belong to
+    private boolean moveVariant(Path flat) {
+        String name = flat.getFileName().toString();
+        String source = FileStorageService.sourceFilename(name);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (source != null) {
+                    mediaFileRepository.lockBlob(source);
+                }
+                try {
+                    // deleted with its blob in the meantime
+                    if (Files.isRegularFile(flat)) {
+                        FileStorageService.moveIntoPlace(flat,
+                                flat.resolveSibling(FileStorageService.shardDirectory(name) + name));
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            return true;
+        } catch (RuntimeException ex) {
+            log.warn("Could not move {} to its shard", name, ex);
+            return false;
+        }
+    }
+
+    // Regular files at the top of directory that belong in a shard. Directories (the
+    // shards, variants, .tmp), temp files and names that can't be sharded are left.
+    private static List<Path> findFlatFiles(Path directory, int limit) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (limit <= 0 || !Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(".") || name.endsWith(".tmp")
+                        || FileStorageService.shardDirectory(name).isEmpty() || !Files.isRegularFile(entry)) {
+                    continue;
+                }
+                files.add(entry);
+                if (files.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return files;
+    }
+}
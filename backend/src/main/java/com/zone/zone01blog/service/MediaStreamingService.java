@@ -0,0 +1,190 @@
+package com.zone.zone01blog.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import com.zone.zone01blog.service.FileStorageService.MediaMetadata;
+import com.zone.zone01blog.util.ByteRange;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Writes a stored file to the response with HTTP range support: Range / If-Range,
+// 206 for one range, multipart/byteranges for several, 416 when nothing is
+// satisfiable. Video players seek with ranges, so a jump to minute 10 only costs the
+// bytes from there on.
+// Validators (ETag, Last-Modified) come from the stored metadata, not the file.
+// The whole file or a single range above sendfile.min-size is handed to Tomcat's
+// sendfile, which copies from the page cache to the socket without passing through
+// the JVM. Everything else goes through FileChannel.transferTo.
+@Service
+public class MediaStreamingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaStreamingService.class);
+
+    // Tomcat request attributes, see org.apache.catalina.Globals
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+
+    private final int maxRanges;
+    private final long sendfileMinSize;
+
+    public MediaStreamingService(@Value("${media.range.max-ranges:16}") int maxRanges,
+            @Value("${media.sendfile.min-size:49152}") long sendfileMinSize) {
+        this.maxRanges = maxRanges;
+        this.sendfileMinSize = sendfileMinSize;
+    }
+
+    public void serve(Path file, MediaMetadata metadata, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = metadata.sizeBytes();
+        long lastModified = metadata.lastModifiedMillis();
+        String contentType = metadata.contentType();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, metadata.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        // If-Range: the ranges only apply to the version the client already has
+        List<ByteRange> ranges = ifRangeMatches(request, metadata.etag(), lastModified)
+                ? ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length, maxRanges)
+                : null;
+        boolean head = "HEAD".equals(request.getMethod());
+
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head) {
+                send(file, 0, length, request, response);
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                send(file, range.start(), range.length(), request, response);
+            }
+        } else {
+            sendMultipart(file, contentType, length, ranges, head, response);
+        }
+    }
+
+    // No If-Range, the same strong entity tag, or an HTTP date equal to the file's
+    // (second precision). A weak tag never matches.
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void send(Path file, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (count >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat writes the region after the servlet returns, nothing may go to the output stream
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, start, count, response.getOutputStream());
+        } catch (IOException e) {
+            handleWriteFailure(file, response, e);
+        }
+    }
+
+    private void sendMultipart(Path file, String contentType, long length, List<ByteRange> ranges, boolean head,
+            HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+
+        // part headers are known up front, so the total length can be sent
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(length) + CRLF + CRLF)
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i).start(), ranges.get(i).length(), out);
+            }
+            out.write(closing);
+        } catch (IOException e) {
+            handleWriteFailure(file, response, e);
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, OutputStream out)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        while (count > 0) {
+            long written = channel.transferTo(position, count, target);
+            if (written <= 0) {
+                throw new IOException("File ended before the requested range");
+            }
+            position += written;
+            count -= written;
+        }
+    }
+
+    // Seeking players abort requests all the time: once bytes went out there's no
+    // error response left to send, so that's only logged
+    private static void handleWriteFailure(Path file, HttpServletResponse response, IOException e)
+            throws IOException {
+        if (!response.isCommitted()) {
+            throw e;
+        }
+        log.debug("Streaming {} stopped: {}", file.getFileName(), e.getMessage());
+    }
+}
@@ -0,0 +1,94 @@
+package com.zone.zone01blog.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.repository.MediaFileRepository;
+
+// Reclaims media blobs no post uses any more.
+// First recounts ref_count from posts.media_url, which fixes rows backfilled at 0 and
+// posts that went away without PostService (user deletion cascades). Then deletes, a
+// blob at a time, the ones that stayed at 0 for the grace period: under the blob's
+// advisory lock, which uploads of the same bytes take too, and only if no post points
+// at it, so a blob is never deleted under a post.
+@Service
+public class MediaSweeperService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaSweeperService.class);
+
+    private final MediaFileRepository mediaFileRepository;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final long gracePeriodMillis;
+    private final int batchSize;
+
+    public MediaSweeperService(MediaFileRepository mediaFileRepository,
+            FileStorageService fileStorageService,
+            PlatformTransactionManager transactionManager,
+            @Value("${media.sweeper.grace-period-ms:3600000}") long gracePeriodMillis,
+            @Value("${media.sweeper.batch-size:500}") int batchSize) {
+        this.mediaFileRepository = mediaFileRepository;
+        this.fileStorageService = fileStorageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${media.sweeper.interval-ms:900000}",
+            initialDelayString = "${media.sweeper.initial-delay-ms:180000}")
+    public void sweep() {
+        Integer reconciled = transactionTemplate.execute(status -> {
+            mediaFileRepository.backfillUpdatedAt();
+            return mediaFileRepository.reconcileRefCounts(FileStorageService.MEDIA_URL_PREFIX, LocalDateTime.now());
+        });
+        if (reconciled != null && reconciled > 0) {
+            log.info("Media sweeper corrected {} reference counts", reconciled);
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(gracePeriodMillis * 1_000_000);
+        int deleted = 0;
+        List<String> candidates;
+        int batchDeleted;
+        do {
+            candidates = mediaFileRepository.findUnreferencedBefore(cutoff, Limit.of(batchSize));
+            batchDeleted = 0;
+            for (String filename : candidates) {
+                if (deleteIfUnreferenced(filename, cutoff)) {
+                    batchDeleted++;
+                }
+            }
+            deleted += batchDeleted;
+            // candidates that couldn't go come back first, a batch of only those ends the run
+        } while (candidates.size() == batchSize && batchDeleted > 0);
+        if (deleted > 0) {
+            log.info("Media sweeper deleted {} unreferenced files", deleted);
+        }
+    }
+
+    // The file goes before the commit: if that fails, the row stays and is tried again
+    private boolean deleteIfUnreferenced(String filename, LocalDateTime cutoff) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                mediaFileRepository.lockBlob(filename);
+                if (mediaFileRepository.deleteUnreferenced(filename, cutoff,
+                        FileStorageService.MEDIA_URL_PREFIX) == 0) {
+                    return false;
+                }
+                fileStorageService.purge(filename);
+                return true;
+            }));
+        } catch (RuntimeException ex) {
+            log.warn("Media sweeper could not delete {}", filename, ex);
+            return false;
+        }
+    }
+}
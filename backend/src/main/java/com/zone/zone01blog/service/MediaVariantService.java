@@ -0,0 +1,283 @@
+package com.zone.zone01blog.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.zone.zone01blog.service.FileStorageService.MediaMetadata;
+import com.zone.zone01blog.util.ExifOrientation;
+import com.zone.zone01blog.util.TtlCache;
+
+import jakarta.annotation.PreDestroy;
+
+// Downscaled renditions of uploaded JPEG and PNG images, one per configured width
+// narrower than the original, so feed cards and phones don't download originals.
+// Generated in the background after an upload, on a fixed pool with a bounded queue:
+// when it is full the task is dropped, and the first ?w= request for a missing
+// variant schedules it again (this also covers files uploaded before variants
+// existed). Until then that request gets the original, with a short Cache-Control.
+// GIF (animation) and WebP (no ImageIO reader) always serve the original.
+// Scaling is ImageIO + Java2D, in halving steps so large reductions don't alias.
+// ImageIO ignores EXIF orientation, so JPEGs are turned upright before scaling; the
+// variants carry no EXIF and are stored upright.
+@Service
+public class MediaVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaVariantService.class);
+
+    private final FileStorageService fileStorageService;
+    private final int[] widths;
+    private final float jpegQuality;
+    private final long maxSourcePixels;
+    private final ThreadPoolExecutor executor;
+    // filenames queued or being generated
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // sources that could not be decoded, not retried on every request
+    private final TtlCache<String, Boolean> failed;
+    private final TtlCache<String, MediaMetadata> variantCache;
+
+    public MediaVariantService(FileStorageService fileStorageService,
+            @Value("${media.variants.widths:320,640,1280}") int[] widths,
+            @Value("${media.variants.jpeg-quality:0.82}") float jpegQuality,
+            @Value("${media.variants.max-source-pixels:25000000}") long maxSourcePixels,
+            @Value("${media.variants.workers:2}") int workers,
+            @Value("${media.variants.queue-capacity:200}") int queueCapacity,
+            @Value("${media.metadata.cache-max-size:10000}") int cacheMaxSize,
+            @Value("${media.metadata.cache-ttl-ms:3600000}") long cacheTtlMillis) {
+        this.fileStorageService = fileStorageService;
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).sorted().distinct().toArray();
+        this.jpegQuality = jpegQuality;
+        this.maxSourcePixels = maxSourcePixels;
+        this.failed = new TtlCache<>(cacheMaxSize, cacheTtlMillis);
+        this.variantCache = new TtlCache<>(cacheMaxSize, cacheTtlMillis);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "media-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static boolean supportsVariants(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    // ?w= URL per configured width, for srcset. Widths at or above the original's
+    // are answered with the original.
+    public Map<Integer, String> variantUrls(String mediaUrl) {
+        if (mediaUrl == null || !supportsVariants(mediaUrl)) {
+            return Map.of();
+        }
+        Map<Integer, String> urls = new LinkedHashMap<>();
+        for (int width : widths) {
+            urls.put(width, mediaUrl + "?w=" + width);
+        }
+        return urls;
+    }
+
+    public void generateAsync(String filename) {
+        if (!supportsVariants(filename) || widths.length == 0 || !pending.add(filename)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(filename);
+                } catch (Exception ex) {
+                    failed.put(filename, Boolean.TRUE);
+                    log.warn("Could not generate variants of {}: {}", filename, ex.getMessage());
+                } finally {
+                    pending.remove(filename);
+                }
+            });
+        } catch (RuntimeException ex) {
+            // queue full or shutting down, the next ?w= request retries
+            pending.remove(filename);
+            log.debug("Variant generation of {} not queued: {}", filename, ex.getMessage());
+        }
+    }
+
+    // What to serve for ?w=requestedWidth: the smallest variant at least that wide,
+    // the original when no variant is narrower than it, or null when the variant
+    // isn't there yet (generation is scheduled)
+    public MediaMetadata getVariant(MediaMetadata original, int requestedWidth) {
+        Integer width = selectWidth(original, requestedWidth);
+        if (width == null) {
+            return original;
+        }
+        String variantFilename = fileStorageService.variantFilename(original.filename(), width);
+        MediaMetadata cached = variantCache.getIfPresent(variantFilename);
+        if (cached != null) {
+            return cached;
+        }
+        Path file = fileStorageService.variantPath(variantFilename);
+        if (!Files.isRegularFile(file)) {
+            if (failed.getIfPresent(original.filename()) == null) {
+                generateAsync(original.filename());
+            }
+            return null;
+        }
+        MediaMetadata variant;
+        try {
+            // the variant is written after the original, Last-Modified is its own
+            LocalDateTime modifiedAt = LocalDateTime.ofInstant(
+                    Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+            variant = new MediaMetadata(variantFilename, original.contentType(), Files.size(file),
+                    original.sha256() + "-w" + width, width, scaledHeight(original, width), modifiedAt);
+        } catch (IOException ex) {
+            return null;
+        }
+        variantCache.put(variantFilename, variant);
+        return variant;
+    }
+
+    private Integer selectWidth(MediaMetadata original, int requestedWidth) {
+        if (!supportsVariants(original.filename()) || original.width() == null || original.height() == null) {
+            return null;
+        }
+        for (int width : widths) {
+            if (width >= requestedWidth) {
+                return width < original.width() ? width : null;
+            }
+        }
+        return null;
+    }
+
+    private static int scaledHeight(MediaMetadata original, int width) {
+        return Math.max(1, Math.round((float) original.height() * width / original.width()));
+    }
+
+    // Widest first, each variant scaled from the previous one
+    private void generate(String filename) throws IOException {
+        MediaMetadata original = fileStorageService.getMetadata(filename);
+        if (original.width() == null || original.height() == null) {
+            return;
+        }
+        // decoded at 4 bytes a pixel
+        if ((long) original.width() * original.height() > maxSourcePixels) {
+            throw new IOException("image too large to scale");
+        }
+        boolean png = original.contentType().equals("image/png");
+
+        BufferedImage image = null;
+        // height over width of the upright source
+        double aspect = 0;
+        for (int i = widths.length - 1; i >= 0; i--) {
+            int width = widths[i];
+            if (width >= original.width()) {
+                continue;
+            }
+            Path target = fileStorageService.variantPath(fileStorageService.variantFilename(filename, width));
+            if (Files.exists(target)) {
+                continue;
+            }
+            if (image == null) {
+                Path source = fileStorageService.resolveFile(filename);
+                image = ImageIO.read(source.toFile());
+                if (image == null) {
+                    throw new IOException("unreadable image");
+                }
+                image = ExifOrientation.apply(image, ExifOrientation.read(source));
+                aspect = (double) image.getHeight() / image.getWidth();
+            }
+            // from the decoded image, rows recorded before orientation was applied have
+            // width and height swapped
+            image = scale(image, width, Math.max(1, (int) Math.round(aspect * width)), png);
+
+            Path temp = fileStorageService.createVariantTempFile();
+            try {
+                write(image, png, temp);
+                if (!fileStorageService.storeVariant(filename, temp, target)) {
+                    return;
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean keepAlpha) {
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // JPEG has no alpha: transparent pixels become white, not black
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, keepAlpha ? null : Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private void write(BufferedImage image, boolean png, Path target) throws IOException {
+        if (png) {
+            if (!ImageIO.write(image, "png", target.toFile())) {
+                throw new IOException("no PNG writer");
+            }
+            return;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("no JPEG writer");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.zone.zone01blog.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.dto.NotificationRow;
+import com.zone.zone01blog.entity.NotificationInboxState;
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.entity.NewPostDismissalId;
+import com.zone.zone01blog.entity.Post;
+import com.zone.zone01blog.entity.User;
+import com.zone.zone01blog.repository.NewPostDismissalRepository;
+import com.zone.zone01blog.repository.NotificationInboxStateRepository;
+import com.zone.zone01blog.repository.NotificationRepository;
+import com.zone.zone01blog.repository.PostRepository;
+import com.zone.zone01blog.repository.SubscriptionRepository;
+import com.zone.zone01blog.util.PageCursor;
+import com.zone.zone01blog.util.TtlCache;
+
+// NEW_POST notifications in pull mode (notifications.new-post.mode=pull).
+// Nothing is stored per follower: the inbox is merged at read time with the recent
+// posts of the authors the user follows, so createPost costs the same whatever the
+// follower count. A pulled item has the post id as its id and is unread while it is
+// newer than the read watermark. Marking one read/unread stores it as a regular
+// notification row, which then takes its place. Deleting one (or its stored row)
+// records a dismissal, and deleting all moves the inbox's cleared-at watermark, so
+// deleted items are not pulled again. The pull window is the NEW_POST retention,
+// the same span push mode keeps rows for.
+// Subscriptions are read from the repository: SubscriptionService depends on the
+// outbox, which depends on NotificationService, which depends on this.
+@Service
+@Transactional
+public class NewPostNotificationService {
+
+    // lower bound when NEW_POST retention is disabled (0 days)
+    private static final LocalDateTime NO_LOWER_BOUND = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PostRepository postRepository;
+    private final SubscriptionRepository subscriptionRepository;
+    private final NotificationRepository notificationRepository;
+    private final NotificationInboxStateRepository inboxStateRepository;
+    private final NewPostDismissalRepository dismissalRepository;
+    private final NotificationPreferenceService notificationPreferenceService;
+    private final boolean pullMode;
+    private final int windowDays;
+    private final int unreadCountCap;
+    private final TtlCache<String, Long> unreadCache;
+    private final TransactionTemplate readTransaction;
+
+    public NewPostNotificationService(PostRepository postRepository,
+            SubscriptionRepository subscriptionRepository,
+            NotificationRepository notificationRepository,
+            NotificationInboxStateRepository inboxStateRepository,
+            NewPostDismissalRepository dismissalRepository,
+            NotificationPreferenceService notificationPreferenceService,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.new-post.mode:push}") String mode,
+            @Value("${notifications.retention.new-post-days:30}") int windowDays,
+            @Value("${notifications.new-post.unread-count-cap:99}") int unreadCountCap,
+            @Value("${notifications.new-post.count-cache-max-size:100000}") int cacheMaxSize,
+            @Value("${notifications.new-post.count-cache-ttl-ms:15000}") long cacheTtlMillis) {
+        this.postRepository = postRepository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.notificationRepository = notificationRepository;
+        this.inboxStateRepository = inboxStateRepository;
+        this.dismissalRepository = dismissalRepository;
+        this.notificationPreferenceService = notificationPreferenceService;
+        this.pullMode = parseMode(mode);
+        this.windowDays = windowDays;
+        this.unreadCountCap = unreadCountCap;
+        this.unreadCache = new TtlCache<>(cacheMaxSize, cacheTtlMillis);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    private static boolean parseMode(String mode) {
+        switch (mode.trim().toLowerCase()) {
+            case "push":
+                return false;
+            case "pull":
+                return true;
+            default:
+                throw new IllegalStateException("notifications.new-post.mode must be push or pull, got: " + mode);
+        }
+    }
+
+    public boolean isPullMode() {
+        return pullMode;
+    }
+
+    public static String messageFor(User author, Post post) {
+        return author.getName() + " created a new post: " + post.getTitle();
+    }
+
+    // Newest first, same keyset order as the stored inbox. unreadOnly keeps the posts
+    // newer than the watermark.
+    @Transactional(readOnly = true)
+    public List<NotificationRow> findPage(String userId, PageCursor after, boolean unreadOnly,
+            LocalDateTime lastReadAt, int limit) {
+        if (notificationPreferenceService.isMuted(userId, NotificationType.NEW_POST)) {
+            return List.of();
+        }
+        List<String> authorIds = subscriptionRepository.findFollowingIdsByUserId(userId);
+        if (authorIds.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime since = since(unreadOnly ? lastReadAt : null, getClearedAt(userId));
+        List<Post> posts = after == null
+                ? postRepository.findNewPostsForInbox(userId, authorIds, since, Limit.of(limit))
+                : postRepository.findNewPostsForInboxBefore(userId, authorIds, since,
+                        after.createdAt(), after.id(), Limit.of(limit));
+        return posts.stream().map(NewPostNotificationService::toRow).toList();
+    }
+
+    // Pulled items newer than the watermark, counted up to unread-count-cap + 1 (the
+    // badge shows "99+" past the cap), so following many active authors doesn't make
+    // every badge read count their whole window. Cached briefly: the badge is read far
+    // more often than anyone posts, and new posts don't invalidate it. A hit opens no
+    // transaction.
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long getUnreadCount(String userId) {
+        Long cached = unreadCache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        return readTransaction.execute(status -> countUnread(userId));
+    }
+
+    private long countUnread(String userId) {
+        if (notificationPreferenceService.isMuted(userId, NotificationType.NEW_POST)) {
+            return 0;
+        }
+        List<String> authorIds = subscriptionRepository.findFollowingIdsByUserId(userId);
+        NotificationInboxState state = authorIds.isEmpty()
+                ? null
+                : inboxStateRepository.findById(userId).orElse(null);
+        long count = authorIds.isEmpty()
+                ? 0
+                : postRepository.findNewPostIdsForInbox(userId, authorIds, state == null
+                        ? since(null, null)
+                        : since(state.getLastReadAt(), state.getClearedAt()), Limit.of(unreadCountCap + 1)).size();
+        unreadCache.put(userId, count);
+        return count;
+    }
+
+    public void invalidate(String userId) {
+        unreadCache.invalidate(userId);
+        afterCommit(() -> unreadCache.invalidate(userId));
+    }
+
+    // Stores the pulled item for postId as a notification row with the given read state.
+    // false when postId is not a pulled item of this user.
+    public boolean materialize(String userId, String postId, boolean read) {
+        Post post = findPulledPost(userId, postId);
+        if (post == null) {
+            return false;
+        }
+        User author = post.getAuthor();
+
+        int inserted = notificationRepository.insertNewPost(UUID.randomUUID().toString(), userId,
+                messageFor(author, post), author.getId(), post.getId(), read, LocalDateTime.now(),
+                post.getCreatedAt());
+        invalidate(userId);
+        return inserted > 0;
+    }
+
+    // Keeps postId out of the user's pulled items, after its notification was deleted.
+    // Also called for stored NEW_POST rows, which would otherwise be pulled again.
+    public void dismiss(String userId, String postId) {
+        dismissalRepository.insert(userId, postId, LocalDateTime.now());
+        invalidate(userId);
+    }
+
+    // Whether postId is currently one of the user's pulled items
+    public boolean isPulled(String userId, String postId) {
+        return findPulledPost(userId, postId) != null;
+    }
+
+    private Post findPulledPost(String userId, String postId) {
+        Post post = postRepository.findVisibleByIdWithAuthor(postId);
+        if (post == null || !post.getCreatedAt().isAfter(since(null, getClearedAt(userId)))) {
+            return null;
+        }
+        if (!subscriptionRepository.existsByFollowerIdAndFollowingId(userId, post.getAuthor().getId())
+                || dismissalRepository.existsById(new NewPostDismissalId(userId, postId))) {
+            return null;
+        }
+        return post;
+    }
+
+    private LocalDateTime getClearedAt(String userId) {
+        return inboxStateRepository.findClearedAtByUserId(userId).orElse(null);
+    }
+
+    // Lower bound of the pulled posts' createdAt: the window start, or the read watermark
+    // (unread items only) or cleared-at watermark when they are later
+    private LocalDateTime since(LocalDateTime lastReadAt, LocalDateTime clearedAt) {
+        LocalDateTime since = windowDays > 0 ? LocalDateTime.now().minusDays(windowDays) : NO_LOWER_BOUND;
+        if (lastReadAt != null && lastReadAt.isAfter(since)) {
+            since = lastReadAt;
+        }
+        if (clearedAt != null && clearedAt.isAfter(since)) {
+            since = clearedAt;
+        }
+        return since;
+    }
+
+    // Read state is left to the caller (watermark rules, readChangedAt is null)
+    private static NotificationRow toRow(Post post) {
+        User author = post.getAuthor();
+        return new NotificationRow(
+                post.getId(),
+                NotificationType.NEW_POST,
+                messageFor(author, post),
+                false,
+                null,
+                post.getCreatedAt(),
+                1,
+                author.getId(),
+                post.getId(),
+                author.getId(),
+                author.getName(),
+                author.getEmail(),
+                author.getRole(),
+                author.getCreatedAt(),
+                author.getUpdatedAt());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.zone.zone01blog.service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zone.zone01blog.repository.NotificationInboxStateRepository;
+import com.zone.zone01blog.repository.NotificationRepository;
+import com.zone.zone01blog.util.TtlCache;
+
+// Unread notification count per user, kept up to date instead of counted.
+// notification_inbox_state.unread_count is the source of truth: every change that
+// makes notifications read/unread adjusts it atomically in the same transaction.
+// Badge reads are served from an in-memory map (ConcurrentHashMap, lock-striped)
+// that is adjusted after commit; its TTL bounds how stale a count can be when
+// another instance made the change. A counter that was never computed (null) is
+// counted once on first read. The reconciliation job corrects drift.
+// A badge read served from the map opens no transaction at all.
+@Service
+@Transactional
+public class NotificationCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationCounterService.class);
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationInboxStateRepository inboxStateRepository;
+    private final TtlCache<String, AtomicLong> cache;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate transaction;
+
+    public NotificationCounterService(NotificationRepository notificationRepository,
+            NotificationInboxStateRepository inboxStateRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.unread-counter.cache-max-size:100000}") int cacheMaxSize,
+            @Value("${notifications.unread-counter.cache-ttl-ms:10000}") long cacheTtlMillis) {
+        this.notificationRepository = notificationRepository;
+        this.inboxStateRepository = inboxStateRepository;
+        this.cache = new TtlCache<>(cacheMaxSize, cacheTtlMillis);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    // On a miss: a read-only transaction, or a read-write one when the counter has
+    // never been computed and is initialized now
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public long getUnreadCount(String userId) {
+        AtomicLong cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return Math.max(0, cached.get());
+        }
+        Long stored = readTransaction.execute(status -> inboxStateRepository.findUnreadCountByUserId(userId)
+                .orElse(null));
+        long count = stored != null ? Math.max(0, stored) : transaction.execute(status -> loadUnreadCount(userId));
+        cache.put(userId, new AtomicLong(count));
+        return count;
+    }
+
+    // Straight from the database, including changes of the current transaction
+    public long loadUnreadCount(String userId) {
+        return inboxStateRepository.findUnreadCountByUserId(userId)
+                .map(count -> Math.max(0, count))
+                .orElseGet(() -> {
+                    long count = countUnread(userId);
+                    inboxStateRepository.initUnreadCount(userId, count);
+                    return count;
+                });
+    }
+
+    public void adjust(String userId, long delta) {
+        adjust(List.of(userId), delta);
+    }
+
+    public void adjust(Collection<String> userIds, long delta) {
+        if (userIds.isEmpty() || delta == 0) {
+            return;
+        }
+        inboxStateRepository.adjustUnreadCounts(userIds, delta);
+        afterCommit(() -> userIds.forEach(userId -> {
+            AtomicLong cached = cache.getIfPresent(userId);
+            if (cached != null) {
+                cached.addAndGet(delta);
+            }
+        }));
+    }
+
+    public void markAllRead(String userId) {
+        inboxStateRepository.markAllRead(userId, LocalDateTime.now());
+        afterCommit(() -> cache.put(userId, new AtomicLong()));
+    }
+
+    public void reset(String userId) {
+        inboxStateRepository.resetUnreadCount(userId);
+        afterCommit(() -> cache.put(userId, new AtomicLong()));
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.unread-counter.reconcile-interval-ms:3600000}",
+            initialDelayString = "${notifications.unread-counter.reconcile-initial-delay-ms:60000}")
+    public void reconcile() {
+        int fixed = inboxStateRepository.reconcileUnreadCounts();
+        if (fixed > 0) {
+            log.warn("Reconciled {} drifted unread notification counters", fixed);
+            afterCommit(cache::clear);
+        }
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    // Without a watermark is_read is the whole story. With one: rows newer than the
+    // watermark, corrected by the individual toggles made since.
+    private long countUnread(String userId) {
+        LocalDateTime lastReadAt = inboxStateRepository.findLastReadAtByUserId(userId).orElse(null);
+        if (lastReadAt == null) {
+            return notificationRepository.countByUserIdAndIsRead(userId, false);
+        }
+        return notificationRepository.countCreatedAfter(userId, lastReadAt)
+                + notificationRepository.sumReadOverridesAfter(userId, lastReadAt);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
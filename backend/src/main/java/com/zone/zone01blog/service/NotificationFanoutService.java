@@ -0,0 +1,117 @@
+package com.zone.zone01blog.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.repository.PostRepository;
+import com.zone.zone01blog.repository.SubscriptionRepository;
+
+// NEW_POST notifications for every follower of an author, delivered by OutboxService.
+// Followers are read as ids only, a page at a time, and each page is one JDBC batch
+// insert committed on its own, so a large fan-out never holds one long transaction.
+// Inserts skip followers who already have the notification, a retried fan-out picks
+// up where the failed one stopped.
+@Service
+public class NotificationFanoutService {
+
+    private static final String INSERT_SQL = "INSERT INTO notifications " +
+            "(id, user_id, type, message, related_user_id, related_post_id, is_read, created_at) " +
+            "SELECT ?, ?, ?, ?, ?, ?, false, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM notifications n " +
+            "   WHERE n.related_post_id = ? AND n.user_id = ? AND n.type = ?)";
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final PostRepository postRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationService notificationService;
+    private final NotificationCounterService notificationCounterService;
+    private final NotificationStreamService notificationStreamService;
+    private final TransactionTemplate batchTransaction;
+    private final int batchSize;
+
+    public NotificationFanoutService(SubscriptionRepository subscriptionRepository,
+            PostRepository postRepository,
+            JdbcTemplate jdbcTemplate,
+            NotificationService notificationService,
+            NotificationCounterService notificationCounterService,
+            NotificationStreamService notificationStreamService,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.fanout.batch-size:500}") int batchSize) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.postRepository = postRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.notificationService = notificationService;
+        this.notificationCounterService = notificationCounterService;
+        this.notificationStreamService = notificationStreamService;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+    }
+
+    public void deliverNewPost(String authorId, String postId, String message) {
+        String afterId = "";
+        while (true) {
+            List<String> followerIds = subscriptionRepository.findFollowerIdsToNotifyAfter(
+                    authorId, NotificationType.NEW_POST, afterId, Limit.of(batchSize));
+            if (followerIds.isEmpty()) {
+                return;
+            }
+            // the post may have been deleted while we were still sending
+            if (!postRepository.existsById(postId)) {
+                return;
+            }
+
+            insertBatch(followerIds, authorId, postId, message);
+            for (String followerId : notificationStreamService.connectedUsers(followerIds)) {
+                notificationService.pushUnreadCount(followerId);
+            }
+
+            if (followerIds.size() < batchSize) {
+                return;
+            }
+            afterId = followerIds.get(followerIds.size() - 1);
+        }
+    }
+
+    private void insertBatch(List<String> followerIds, String authorId, String postId, String message) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String type = NotificationType.NEW_POST.name();
+        batchTransaction.executeWithoutResult(status -> {
+            int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, followerIds, followerIds.size(),
+                    (ps, followerId) -> {
+                        ps.setString(1, UUID.randomUUID().toString());
+                        ps.setString(2, followerId);
+                        ps.setString(3, type);
+                        ps.setString(4, message);
+                        ps.setString(5, authorId);
+                        ps.setString(6, postId);
+                        ps.setTimestamp(7, now);
+                        ps.setString(8, postId);
+                        ps.setString(9, followerId);
+                        ps.setString(10, type);
+                    });
+
+            // unread counters of the followers that actually got a new row
+            List<String> notified = new ArrayList<>();
+            int[] rowCounts = counts[0];
+            for (int i = 0; i < rowCounts.length; i++) {
+                if (rowCounts[i] != 0) {
+                    notified.add(followerIds.get(i));
+                }
+            }
+            notificationCounterService.adjust(notified, 1);
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.zone.zone01blog.service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zone.zone01blog.dto.NotificationPreferenceDTO;
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.repository.NotificationPreferenceRepository;
+import com.zone.zone01blog.util.TtlCache;
+
+// Muted notification types per user. Checked before anything is written for a
+// recipient (outbox event, notification row, counter), so users who turn a type off
+// cost a cache lookup instead of rows. Most users have no preferences at all, which
+// is cached as an empty set. The NEW_POST fan-out filters muted followers in SQL.
+@Service
+@Transactional
+public class NotificationPreferenceService {
+
+    private final NotificationPreferenceRepository preferenceRepository;
+    private final TtlCache<String, Set<NotificationType>> mutedTypesCache;
+
+    public NotificationPreferenceService(NotificationPreferenceRepository preferenceRepository,
+            @Value("${notifications.preferences.cache-max-size:100000}") int cacheMaxSize,
+            @Value("${notifications.preferences.cache-ttl-ms:60000}") long cacheTtlMillis) {
+        this.preferenceRepository = preferenceRepository;
+        this.mutedTypesCache = new TtlCache<>(cacheMaxSize, cacheTtlMillis);
+    }
+
+    public boolean isMuted(String userId, NotificationType type) {
+        return getMutedTypes(userId).contains(type);
+    }
+
+    @Transactional(readOnly = true)
+    public List<NotificationPreferenceDTO> getPreferences(String userId) {
+        return toDTOs(getMutedTypes(userId));
+    }
+
+    public List<NotificationPreferenceDTO> setMuted(String userId, String type, boolean muted) {
+        NotificationType parsed;
+        try {
+            parsed = NotificationType.valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid notification type: " + type);
+        }
+
+        preferenceRepository.upsert(userId, parsed.name(), muted, LocalDateTime.now());
+        evict(userId);
+
+        // built from the new state, the cache may not have it yet
+        return toDTOs(loadMutedTypes(userId));
+    }
+
+    private static List<NotificationPreferenceDTO> toDTOs(Set<NotificationType> muted) {
+        return Arrays.stream(NotificationType.values())
+                .map(type -> new NotificationPreferenceDTO(type.name(), muted.contains(type)))
+                .toList();
+    }
+
+    private Set<NotificationType> getMutedTypes(String userId) {
+        return mutedTypesCache.get(userId, this::loadMutedTypes);
+    }
+
+    private Set<NotificationType> loadMutedTypes(String userId) {
+        List<NotificationType> muted = preferenceRepository.findMutedTypesByUserId(userId);
+        return muted.isEmpty() ? Set.of() : EnumSet.copyOf(muted);
+    }
+
+    // now and again after commit, so a concurrent read can't cache the old set for a TTL
+    private void evict(String userId) {
+        mutedTypesCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mutedTypesCache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.zone.zone01blog.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.entity.NotificationType;
+
+// Deletes notifications older than the retention period of their type.
+// Runs in batches of batch-size rows, each in its own short transaction, using the
+// (type, created_at) index. Rows locked by another instance running the same job are
+// skipped. Unread counters of the affected users are decremented in the same
+// statement, so they don't drift.
+// Dismissed pulled NEW_POST items (new_post_dismissals) go with NEW_POST retention:
+// by then their posts are out of the pull window.
+// Retention of 0 keeps a type forever.
+@Service
+public class NotificationRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionService.class);
+
+    // deleted rows that were still unread (same rules as NotificationService) are
+    // subtracted from the owners' maintained counters
+    private static final String DELETE_BATCH_SQL = "WITH deleted AS (" +
+            "   DELETE FROM notifications WHERE id IN (" +
+            "       SELECT id FROM notifications WHERE type = ? AND created_at < ? " +
+            "       LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "   RETURNING user_id, is_read, read_changed_at, created_at), " +
+            "unread AS (" +
+            "   SELECT d.user_id, COUNT(*) AS deleted_unread FROM deleted d " +
+            "   LEFT JOIN notification_inbox_state s ON s.user_id = d.user_id " +
+            "   WHERE CASE WHEN s.last_read_at IS NULL THEN d.is_read = false " +
+            "              WHEN d.read_changed_at > s.last_read_at THEN d.is_read = false " +
+            "              ELSE d.created_at > s.last_read_at END " +
+            "   GROUP BY d.user_id), " +
+            "adjusted AS (" +
+            "   UPDATE notification_inbox_state s SET unread_count = GREATEST(s.unread_count - u.deleted_unread, 0) " +
+            "   FROM unread u WHERE s.user_id = u.user_id AND s.unread_count IS NOT NULL) " +
+            "SELECT COUNT(*) FROM deleted";
+
+    private static final String DELETE_DISMISSALS_BATCH_SQL = "DELETE FROM new_post_dismissals " +
+            "WHERE (user_id, post_id) IN (" +
+            "   SELECT user_id, post_id FROM new_post_dismissals WHERE dismissed_at < ? " +
+            "   LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationCounterService notificationCounterService;
+    private final Map<NotificationType, Integer> retentionDays = new EnumMap<>(NotificationType.class);
+    private final int batchSize;
+
+    public NotificationRetentionService(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            NotificationCounterService notificationCounterService,
+            @Value("${notifications.retention.new-follower-days:365}") int newFollowerDays,
+            @Value("${notifications.retention.post-like-days:90}") int postLikeDays,
+            @Value("${notifications.retention.post-comment-days:180}") int postCommentDays,
+            @Value("${notifications.retention.new-post-days:30}") int newPostDays,
+            @Value("${notifications.retention.batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.notificationCounterService = notificationCounterService;
+        this.retentionDays.put(NotificationType.NEW_FOLLOWER, newFollowerDays);
+        this.retentionDays.put(NotificationType.POST_LIKE, postLikeDays);
+        this.retentionDays.put(NotificationType.POST_COMMENT, postCommentDays);
+        this.retentionDays.put(NotificationType.NEW_POST, newPostDays);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.retention.interval-ms:3600000}",
+            initialDelayString = "${notifications.retention.initial-delay-ms:120000}")
+    public void purgeExpired() {
+        long total = 0;
+        for (Map.Entry<NotificationType, Integer> entry : retentionDays.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(entry.getValue());
+            total += purge(entry.getKey(), cutoff);
+            if (entry.getKey() == NotificationType.NEW_POST) {
+                purgeDismissals(cutoff);
+            }
+        }
+        if (total > 0) {
+            // the cached badge values of affected users are stale now
+            notificationCounterService.clearCache();
+            log.info("Deleted {} expired notifications", total);
+        }
+    }
+
+    long purge(NotificationType type, LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        long total = 0;
+        long deleted;
+        do {
+            Long count = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                    DELETE_BATCH_SQL, Long.class, type.name(), before, batchSize));
+            deleted = count == null ? 0 : count;
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+
+    void purgeDismissals(LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    DELETE_DISMISSALS_BATCH_SQL, before, batchSize));
+        } while (deleted != null && deleted == batchSize);
+    }
+}
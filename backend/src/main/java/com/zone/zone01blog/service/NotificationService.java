@@ -1,17 +1,31 @@
 package com.zone.zone01blog.service;
 
 import com.zone.zone01blog.dto.NotificationDTO;
+import com.zone.zone01blog.dto.NotificationRow;
+import com.zone.zone01blog.dto.PageResponse;
 import com.zone.zone01blog.dto.UserDTO;
 import com.zone.zone01blog.entity.Notification;
 import com.zone.zone01blog.entity.NotificationType;
 import com.zone.zone01blog.entity.Post;
 import com.zone.zone01blog.entity.User;
+import com.zone.zone01blog.repository.NotificationInboxStateRepository;
 import com.zone.zone01blog.repository.NotificationRepository;
 import com.zone.zone01blog.exception.NotificationNotFoundException;
+import com.zone.zone01blog.util.PageCursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -19,14 +33,55 @@ import java.util.stream.Collectors;
 @Transactional
 public class NotificationService {
 
+    // coalesced into one row per post and time window
+    private static final Set<NotificationType> COALESCED_TYPES =
+            EnumSet.of(NotificationType.POST_LIKE, NotificationType.POST_COMMENT);
+    private static final int MAX_RECENT_ACTORS = 3;
+
+    // inbox order, same as the keyset cursor
+    private static final Comparator<NotificationRow> NEWEST_FIRST = Comparator
+            .comparing(NotificationRow::createdAt)
+            .thenComparing(NotificationRow::id)
+            .reversed();
+
     private final NotificationRepository notificationRepository;
+    private final NotificationInboxStateRepository inboxStateRepository;
+    private final NotificationCounterService notificationCounterService;
+    private final NotificationStreamService notificationStreamService;
+    private final NewPostNotificationService newPostNotificationService;
+    private final NotificationPreferenceService notificationPreferenceService;
+    private final long coalesceWindowMillis;
 
-    public NotificationService(NotificationRepository notificationRepository) {
+    public NotificationService(NotificationRepository notificationRepository,
+            NotificationInboxStateRepository inboxStateRepository,
+            NotificationCounterService notificationCounterService,
+            NotificationStreamService notificationStreamService,
+            NewPostNotificationService newPostNotificationService,
+            NotificationPreferenceService notificationPreferenceService,
+            @Value("${notifications.coalesce.window-ms:86400000}") long coalesceWindowMillis) {
         this.notificationRepository = notificationRepository;
+        this.inboxStateRepository = inboxStateRepository;
+        this.notificationCounterService = notificationCounterService;
+        this.notificationStreamService = notificationStreamService;
+        this.newPostNotificationService = newPostNotificationService;
+        this.notificationPreferenceService = notificationPreferenceService;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+    }
+
+    public SseEmitter subscribe(String userId) {
+        return notificationStreamService.subscribe(userId, getUnreadCount(userId));
     }
 
     public void createNotification(User recipient, NotificationType type, String message,
             User relatedUser, Post relatedPost) {
+        if (notificationPreferenceService.isMuted(recipient.getId(), type)) {
+            return;
+        }
+        if (relatedPost != null && relatedUser != null && COALESCED_TYPES.contains(type)) {
+            createGroupedNotification(recipient.getId(), type, message, relatedUser, relatedPost);
+            return;
+        }
+
         Notification notification = Notification.builder()
                 .id(UUID.randomUUID().toString())
                 .user(recipient)
@@ -36,57 +91,276 @@ public class NotificationService {
                 .relatedPost(relatedPost)
                 .build();
 
-        notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        String recipientId = recipient.getId();
+        notificationCounterService.adjust(recipientId, 1);
+
+        if (notificationStreamService.isConnected(recipientId)) {
+            notificationStreamService.publishNotification(recipientId, convertToDTO(saved, false),
+                    loadUnreadCount(recipientId));
+        }
     }
 
-    public List<NotificationDTO> getUserNotifications(String userId) {
-        List<Notification> notifications = notificationRepository.findByUserIdWithRelatedUser(userId);
-        return notifications.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    // One row per (recipient, type, post, time window). The group's previous state decides
+    // the unread counter change (only if it was read), who the recent actors are and
+    // whether this actor is new. An actor that already dropped out of the recent list is
+    // counted again, so actorCount can overstate repeat likes slightly.
+    private void createGroupedNotification(String recipientId, NotificationType type, String message,
+            User actor, Post post) {
+        long bucket = System.currentTimeMillis() / coalesceWindowMillis;
+        String groupKey = type.name() + ":" + post.getId() + ":" + bucket;
+        Optional<NotificationRepository.GroupState> previous = notificationRepository.findGroupState(recipientId, groupKey);
+
+        List<String> recentActors = new ArrayList<>();
+        recentActors.add(actor.getId());
+        int newActors = 1;
+        int actorCount = 1;
+        boolean wasUnread = false;
+        if (previous.isPresent()) {
+            NotificationRepository.GroupState state = previous.get();
+            List<String> previousActors = splitActorIds(state.getRecentActorIds());
+            newActors = previousActors.contains(actor.getId()) ? 0 : 1;
+            actorCount = state.getActorCount() + newActors;
+            previousActors.stream()
+                    .filter(id -> !id.equals(actor.getId()))
+                    .limit(MAX_RECENT_ACTORS - 1)
+                    .forEach(recentActors::add);
+            wasUnread = !isRead(state.getIsRead(), state.getReadChangedAt(), state.getCreatedAt(),
+                    getLastReadAt(recipientId));
+        }
+
+        String id = previous.map(NotificationRepository.GroupState::getId).orElseGet(() -> UUID.randomUUID().toString());
+        String text = actorCount > 1 ? groupedMessage(type, actor.getName(), actorCount - 1, post.getTitle()) : message;
+        notificationRepository.upsertGrouped(id, recipientId, type.name(), text, actor.getId(), post.getId(),
+                LocalDateTime.now(), groupKey, String.join(",", recentActors), newActors);
+
+        if (!wasUnread) {
+            notificationCounterService.adjust(recipientId, 1);
+        }
+        if (notificationStreamService.isConnected(recipientId)) {
+            notificationRepository.findById(id).ifPresent(saved -> notificationStreamService.publishNotification(
+                    recipientId, convertToDTO(saved, false), loadUnreadCount(recipientId)));
+        }
+    }
+
+    private static String groupedMessage(NotificationType type, String actorName, int others, String title) {
+        String verb = type == NotificationType.POST_LIKE ? "liked" : "commented on";
+        return actorName + " and " + others + (others == 1 ? " other " : " others ") + verb + " your post: " + title;
     }
 
-    public List<NotificationDTO> getUnreadNotifications(String userId) {
-        List<Notification> notifications = notificationRepository.findUnreadByUserId(userId);
-        return notifications.stream()
-                .map(this::convertToDTO)
+    private static List<String> splitActorIds(String actorIds) {
+        if (actorIds == null || actorIds.isBlank()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(actorIds.split(",")));
+    }
+
+    // types are NotificationType names, none means all types
+    public PageResponse<NotificationDTO> getNotifications(String userId, String cursor, Integer limit,
+            List<String> types, boolean unreadOnly) {
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.normalizeLimit(limit);
+        Set<NotificationType> typeFilter = parseTypes(types);
+        LocalDateTime lastReadAt = getLastReadAt(userId);
+
+        // one extra row tells us whether there is a next page
+        List<NotificationRow> rows = notificationRepository.findInboxPage(
+                userId, after, typeFilter, unreadOnly, lastReadAt, pageSize + 1);
+        if (newPostNotificationService.isPullMode()
+                && (typeFilter.isEmpty() || typeFilter.contains(NotificationType.NEW_POST))) {
+            rows = mergeNewestFirst(rows, newPostNotificationService.findPage(
+                    userId, after, unreadOnly, lastReadAt, pageSize + 1), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<NotificationRow> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+        List<NotificationDTO> items = pageRows.stream()
+                .map(row -> convertToDTO(row, lastReadAt))
                 .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            NotificationRow last = pageRows.get(pageRows.size() - 1);
+            nextCursor = new PageCursor(last.createdAt(), last.id()).encode();
+        }
+        return new PageResponse<>(items, nextCursor);
     }
 
+    private static List<NotificationRow> mergeNewestFirst(List<NotificationRow> stored,
+            List<NotificationRow> pulled, int limit) {
+        if (pulled.isEmpty()) {
+            return stored;
+        }
+        List<NotificationRow> merged = new ArrayList<>(stored);
+        merged.addAll(pulled);
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    private static Set<NotificationType> parseTypes(List<String> types) {
+        if (types == null || types.isEmpty()) {
+            return Set.of();
+        }
+        Set<NotificationType> parsed = EnumSet.noneOf(NotificationType.class);
+        for (String type : types) {
+            try {
+                parsed.add(NotificationType.valueOf(type.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid notification type: " + type);
+            }
+        }
+        return parsed;
+    }
+
+    // Served from caches, each opens a transaction only on a miss
+    @Transactional(propagation = Propagation.SUPPORTS)
     public long getUnreadCount(String userId) {
-        return notificationRepository.countByUserIdAndIsRead(userId, false);
+        long count = notificationCounterService.getUnreadCount(userId);
+        if (newPostNotificationService.isPullMode()) {
+            count += newPostNotificationService.getUnreadCount(userId);
+        }
+        return count;
     }
 
-    public void markAsRead(String userId, String notificationId) {
-        Notification notification = notificationRepository.findByIdAndUserId(notificationId, userId)
-                .orElseThrow(() -> new NotificationNotFoundException("Notification not found"));
+    // Straight from the database, for pushes made inside a transaction
+    private long loadUnreadCount(String userId) {
+        long count = notificationCounterService.loadUnreadCount(userId);
+        if (newPostNotificationService.isPullMode()) {
+            count += newPostNotificationService.getUnreadCount(userId);
+        }
+        return count;
+    }
 
-        notification.setRead(true);
-        notificationRepository.save(notification);
+    public void markAsRead(String userId, String notificationId) {
+        setRead(userId, notificationId, true);
     }
 
     public void markAsUnread(String userId, String notificationId) {
-        Notification notification = notificationRepository.findByIdAndUserId(notificationId, userId)
-                .orElseThrow(() -> new NotificationNotFoundException("Notification not found"));
+        setRead(userId, notificationId, false);
+    }
+
+    // Only moves the user's watermark, notification rows are left alone
+    public void markAllAsRead(String userId) {
+        notificationCounterService.markAllRead(userId);
+        if (newPostNotificationService.isPullMode()) {
+            newPostNotificationService.invalidate(userId);
+        }
+        pushUnreadCount(userId);
+    }
 
-        notification.setRead(false);
+    private void setRead(String userId, String notificationId, boolean read) {
+        Optional<Notification> stored = notificationRepository.findByIdAndUserId(notificationId, userId);
+        if (stored.isEmpty()) {
+            // a pulled NEW_POST item (its id is the post id) becomes a stored row
+            if (newPostNotificationService.isPullMode()
+                    && newPostNotificationService.materialize(userId, notificationId, read)) {
+                if (!read) {
+                    notificationCounterService.adjust(userId, 1);
+                }
+                pushUnreadCount(userId);
+                return;
+            }
+            throw new NotificationNotFoundException("Notification not found");
+        }
+        Notification notification = stored.get();
+
+        boolean wasRead = isRead(notification, getLastReadAt(userId));
+        notification.setRead(read);
+        notification.setReadChangedAt(LocalDateTime.now());
         notificationRepository.save(notification);
+
+        if (wasRead != read) {
+            notificationCounterService.adjust(userId, read ? -1 : 1);
+            pushUnreadCount(userId);
+        }
     }
 
-    public void markAllAsRead(String userId) {
-        notificationRepository.markAllAsReadByUserId(userId);
+    private LocalDateTime getLastReadAt(String userId) {
+        return inboxStateRepository.findLastReadAtByUserId(userId).orElse(null);
+    }
+
+    private static boolean isRead(Notification notification, LocalDateTime lastReadAt) {
+        return isRead(notification.isRead(), notification.getReadChangedAt(), notification.getCreatedAt(), lastReadAt);
+    }
+
+    private static boolean isRead(boolean read, LocalDateTime readChangedAt, LocalDateTime createdAt,
+            LocalDateTime lastReadAt) {
+        if (lastReadAt == null) {
+            return read;
+        }
+        if (readChangedAt != null && readChangedAt.isAfter(lastReadAt)) {
+            return read;
+        }
+        return !createdAt.isAfter(lastReadAt);
     }
 
-    public void deleteNotification(String notificationId) {
-        notificationRepository.deleteById(notificationId);
+    public void deleteNotification(String userId, String notificationId) {
+        Notification notification = notificationRepository.findByIdAndUserId(notificationId, userId).orElse(null);
+        if (notification == null) {
+            // a pulled NEW_POST item (its id is the post id) is dismissed instead
+            if (newPostNotificationService.isPullMode()
+                    && newPostNotificationService.isPulled(userId, notificationId)) {
+                newPostNotificationService.dismiss(userId, notificationId);
+                pushUnreadCount(userId);
+            }
+            return;
+        }
+        boolean wasRead = isRead(notification, getLastReadAt(userId));
+        notificationRepository.delete(notification);
+        if (newPostNotificationService.isPullMode() && notification.getType() == NotificationType.NEW_POST
+                && notification.getRelatedPost() != null) {
+            newPostNotificationService.dismiss(userId, notification.getRelatedPost().getId());
+        }
+
+        if (!wasRead) {
+            notificationCounterService.adjust(userId, -1);
+            pushUnreadCount(userId);
+        }
     }
 
+    // Pulled NEW_POST items are hidden by the cleared-at watermark
     public void deleteAllUserNotifications(String userId) {
-        List<Notification> notifications = notificationRepository.findByUserIdWithRelatedUser(userId);
-        notificationRepository.deleteAll(notifications);
+        notificationRepository.deleteAllByUserId(userId);
+        inboxStateRepository.markCleared(userId, LocalDateTime.now());
+        notificationCounterService.reset(userId);
+        if (newPostNotificationService.isPullMode()) {
+            newPostNotificationService.invalidate(userId);
+        }
+        pushUnreadCount(userId);
+    }
+
+    // keeps the badge of the user's other open sessions in sync
+    public void pushUnreadCount(String userId) {
+        if (notificationStreamService.isConnected(userId)) {
+            notificationStreamService.publishUnreadCount(userId, loadUnreadCount(userId));
+        }
+    }
+
+    private NotificationDTO convertToDTO(NotificationRow row, LocalDateTime lastReadAt) {
+        UserDTO relatedUserDTO = null;
+        if (row.relatedUserId() != null) {
+            relatedUserDTO = new UserDTO(
+                    row.relatedUserId(),
+                    row.relatedUserName(),
+                    row.relatedUserEmail(),
+                    row.relatedUserRole(),
+                    row.relatedUserCreatedAt(),
+                    row.relatedUserUpdatedAt());
+        }
+
+        return new NotificationDTO(
+                row.id(),
+                row.type().name(),
+                row.message(),
+                relatedUserDTO,
+                row.relatedPostId(),
+                isRead(row.isRead(), row.readChangedAt(), row.createdAt(), lastReadAt),
+                row.createdAt(),
+                row.actorCount(),
+                splitActorIds(row.recentActorIds()));
     }
 
-    private NotificationDTO convertToDTO(Notification notification) {
+    private NotificationDTO convertToDTO(Notification notification, boolean read) {
         UserDTO relatedUserDTO = null;
         if (notification.getRelatedUser() != null) {
             User relatedUser = notification.getRelatedUser();
@@ -109,7 +383,9 @@ public class NotificationService {
                 notification.getMessage(),
                 relatedUserDTO,
                 relatedPostId,
-                notification.isRead(),
-                notification.getCreatedAt());
+                read,
+                notification.getCreatedAt(),
+                notification.getActorCount(),
+                splitActorIds(notification.getRecentActorIds()));
     }
 }
@@ -0,0 +1,151 @@
+package com.zone.zone01blog.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.zone.zone01blog.dto.NotificationDTO;
+
+import jakarta.annotation.PreDestroy;
+
+// Server-Sent Events sessions per user (GET /api/v1/notifications/stream).
+// Pushes "notification" and "unread-count" events so clients don't have to poll.
+// Emitters live in this instance only: a notification created on another node
+// reaches the client through its (slow) fallback poll.
+@Service
+public class NotificationStreamService {
+
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final int maxConnectionsPerUser;
+
+    public NotificationStreamService(
+            @Value("${notifications.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${notifications.stream.max-connections-per-user:5}") int maxConnectionsPerUser) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+    }
+
+    public SseEmitter subscribe(String userId, long unreadCount) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        List<SseEmitter> evicted = new ArrayList<>();
+        // atomic with remove() dropping the user's emptied list, which would otherwise
+        // take the new emitter with it
+        emitters.compute(userId, (id, userEmitters) -> {
+            List<SseEmitter> list = userEmitters != null ? userEmitters : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            // oldest sessions go first when a user opens too many tabs
+            while (list.size() > maxConnectionsPerUser) {
+                evicted.add(list.remove(0));
+            }
+            return list;
+        });
+        // outside compute: completing may run their callbacks, which compute on this key
+        evicted.forEach(SseEmitter::complete);
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        send(userId, emitter, unreadCountEvent(unreadCount));
+        return emitter;
+    }
+
+    public boolean isConnected(String userId) {
+        return emitters.containsKey(userId);
+    }
+
+    public Set<String> connectedUsers(Collection<String> userIds) {
+        return userIds.stream()
+                .filter(emitters::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    // Sent once the caller's transaction commits, nothing is pushed for a rollback
+    public void publishNotification(String userId, NotificationDTO notification, long unreadCount) {
+        afterCommit(() -> {
+            sendToUser(userId, () -> SseEmitter.event().name("notification").data(notification, MediaType.APPLICATION_JSON));
+            sendToUser(userId, () -> unreadCountEvent(unreadCount));
+        });
+    }
+
+    public void publishUnreadCount(String userId, long unreadCount) {
+        afterCommit(() -> sendToUser(userId, () -> unreadCountEvent(unreadCount)));
+    }
+
+    // Comment lines keep proxies from closing idle connections and flush out dead clients
+    @Scheduled(fixedDelayString = "${notifications.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        emitters.forEach((userId, userEmitters) -> {
+            for (SseEmitter emitter : userEmitters) {
+                send(userId, emitter, SseEmitter.event().comment("heartbeat"));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        emitters.values().forEach(userEmitters -> userEmitters.forEach(SseEmitter::complete));
+        emitters.clear();
+    }
+
+    // an event builder can only be sent once, so each emitter gets a fresh one
+    private void sendToUser(String userId, Supplier<SseEmitter.SseEventBuilder> event) {
+        List<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : userEmitters) {
+            send(userId, emitter, event.get());
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder unreadCountEvent(long unreadCount) {
+        return SseEmitter.event().name("unread-count").data(Map.of("count", unreadCount));
+    }
+
+    private void send(String userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // client went away
+            remove(userId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(String userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            userEmitters.remove(emitter);
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.zone.zone01blog.service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zone.zone01blog.entity.NotificationType;
+import com.zone.zone01blog.entity.OutboxEvent;
+import com.zone.zone01blog.entity.Post;
+import com.zone.zone01blog.entity.User;
+import com.zone.zone01blog.repository.OutboxEventRepository;
+import com.zone.zone01blog.repository.PostRepository;
+import com.zone.zone01blog.repository.UserRepository;
+
+// Transactional outbox for notifications.
+// Services enqueue an OutboxEvent inside their own transaction, so the like/comment/
+// follow/post and its notification commit or roll back together and the request only
+// pays for one small insert. A scheduled poller claims due events with
+// FOR UPDATE SKIP LOCKED (several nodes can poll at once) in a short transaction that
+// only leases them, by moving available_at past the claim lease. Each event is then
+// delivered and deleted in one transaction of its own, and a failure records its retry
+// state in another, so one bad event never undoes the rest of the batch.
+// Failures are retried with exponential backoff, an event that keeps failing is marked
+// failed after max-attempts and stops blocking its ordering key. An event whose poller
+// died is claimed again once its lease runs out. Delivery is at-least-once.
+@Service
+public class OutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final NotificationService notificationService;
+    private final NotificationFanoutService notificationFanoutService;
+    private final NotificationPreferenceService notificationPreferenceService;
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseDelayMillis;
+    private final long claimLeaseMillis;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository,
+            NotificationService notificationService,
+            NotificationFanoutService notificationFanoutService,
+            NotificationPreferenceService notificationPreferenceService,
+            UserRepository userRepository,
+            PostRepository postRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.outbox.batch-size:100}") int batchSize,
+            @Value("${notifications.outbox.max-attempts:8}") int maxAttempts,
+            @Value("${notifications.outbox.retry-base-delay-ms:1000}") long retryBaseDelayMillis,
+            @Value("${notifications.outbox.claim-lease-ms:300000}") long claimLeaseMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.notificationService = notificationService;
+        this.notificationFanoutService = notificationFanoutService;
+        this.notificationPreferenceService = notificationPreferenceService;
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+        this.claimLeaseMillis = claimLeaseMillis;
+    }
+
+    // Notification for a single recipient (like, comment, follow)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueNotification(String recipientId, NotificationType type, String message,
+            String actorId, String postId) {
+        // checked again at delivery, the setting may change in between
+        if (notificationPreferenceService.isMuted(recipientId, type)) {
+            return;
+        }
+        save(OutboxEvent.builder()
+                .type(type)
+                .orderingKey(recipientId)
+                .recipientId(recipientId)
+                .actorId(actorId)
+                .postId(postId)
+                .message(message));
+    }
+
+    // NEW_POST for every follower of the author
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueNewPost(String authorId, String postId, String message) {
+        save(OutboxEvent.builder()
+                .type(NotificationType.NEW_POST)
+                .orderingKey("followers:" + authorId)
+                .actorId(authorId)
+                .postId(postId)
+                .message(message));
+    }
+
+    private void save(OutboxEvent.OutboxEventBuilder event) {
+        outboxEventRepository.save(event.availableAt(LocalDateTime.now()).build());
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.outbox.poll-interval-ms:500}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void poll() {
+        // keep going while full batches come back
+        List<OutboxEvent> claimed;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            claimed = transaction.execute(status -> claimBatch(now));
+            for (OutboxEvent head : claimed) {
+                // The rest of the key can't be claimed by others while its head is leased,
+                // so the events queued behind it are delivered in this pass too, each one
+                // leased in the transaction that deletes the one before.
+                // Stops at the first failure or not-yet-due event.
+                OutboxEvent event = head;
+                for (int delivered = 1; event != null; delivered++) {
+                    event = deliverAndClaimNext(event, now, delivered < batchSize);
+                }
+            }
+        } while (claimed.size() == batchSize);
+    }
+
+    private List<OutboxEvent> claimBatch(LocalDateTime now) {
+        List<OutboxEvent> heads = outboxEventRepository.claimBatch(now, batchSize);
+        LocalDateTime leaseUntil = leaseUntil();
+        // written back on commit
+        heads.forEach(head -> head.setAvailableAt(leaseUntil));
+        return heads;
+    }
+
+    // Delivers a leased event and deletes it in one transaction. With claimNext, returns
+    // the next event of its key, leased in the same transaction; null when there is none
+    // due, the delivery failed or the lease was lost.
+    private OutboxEvent deliverAndClaimNext(OutboxEvent claimed, LocalDateTime now, boolean claimNext) {
+        try {
+            return transaction.execute(status -> {
+                OutboxEvent event = outboxEventRepository.lockClaimed(claimed.getId(), claimed.getAvailableAt())
+                        .orElse(null);
+                if (event == null) {
+                    log.warn("Outbox event {} ({}) lease expired before delivery", claimed.getId(), claimed.getType());
+                    return null;
+                }
+                deliver(event);
+                outboxEventRepository.delete(event);
+                if (!claimNext) {
+                    return null;
+                }
+
+                OutboxEvent next = outboxEventRepository.findNextForKey(event.getOrderingKey(), event.getId())
+                        .orElse(null);
+                if (next == null || next.getAvailableAt().isAfter(now)) {
+                    return null;
+                }
+                next.setAvailableAt(leaseUntil());
+                return next;
+            });
+        } catch (RuntimeException e) {
+            transaction.executeWithoutResult(status -> scheduleRetry(claimed, e));
+            return null;
+        }
+    }
+
+    // Truncated to what the timestamp column stores, lockClaimed compares it for equality
+    private LocalDateTime leaseUntil() {
+        return LocalDateTime.now().plusNanos(claimLeaseMillis * 1_000_000L).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private void deliver(OutboxEvent event) {
+        if (event.getType() == NotificationType.NEW_POST) {
+            // inserts commit batch by batch on their own, a retry skips followers already notified
+            notificationFanoutService.deliverNewPost(event.getActorId(), event.getPostId(), event.getMessage());
+            return;
+        }
+        // recipient or post deleted in the meantime: nothing left to notify about
+        Optional<User> recipient = userRepository.findById(event.getRecipientId());
+        if (recipient.isEmpty()) {
+            return;
+        }
+        Post post = null;
+        if (event.getPostId() != null) {
+            post = postRepository.findById(event.getPostId()).orElse(null);
+            if (post == null) {
+                return;
+            }
+        }
+        User actor = event.getActorId() == null ? null : userRepository.findById(event.getActorId()).orElse(null);
+
+        notificationService.createNotification(recipient.get(), event.getType(), event.getMessage(), actor, post);
+    }
+
+    private void scheduleRetry(OutboxEvent claimed, RuntimeException e) {
+        OutboxEvent event = outboxEventRepository.lockClaimed(claimed.getId(), claimed.getAvailableAt())
+                .orElse(null);
+        if (event == null) {
+            return;
+        }
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(truncate(String.valueOf(e.getMessage()), 1000));
+
+        if (attempts >= maxAttempts) {
+            event.setFailedAt(LocalDateTime.now());
+            log.error("Outbox event {} ({}) failed after {} attempts", event.getId(), event.getType(), attempts, e);
+            return;
+        }
+
+        // 1s, 2s, 4s, ... capped at about an hour
+        long delay = retryBaseDelayMillis << Math.min(attempts - 1, 12);
+        event.setAvailableAt(LocalDateTime.now().plusNanos(delay * 1_000_000L));
+        log.warn("Outbox event {} ({}) failed, attempt {} of {}", event.getId(), event.getType(), attempts, maxAttempts, e);
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
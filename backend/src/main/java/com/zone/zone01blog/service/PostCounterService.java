@@ -0,0 +1,189 @@
+package com.zone.zone01blog.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zone.zone01blog.entity.Post;
+import com.zone.zone01blog.repository.PostRepository;
+
+import jakarta.annotation.PreDestroy;
+
+// Like and comment counters stored on posts (like_count, comment_count).
+// Likes and comments don't touch the post row: each change is added to an in-memory
+// LongAdder per post, and the summed deltas are written in one JDBC batch on a
+// schedule and on shutdown. A hot post then costs one UPDATE per flush instead of one
+// row lock per like. Displayed counts are the column plus the pending delta.
+// A repair job re-derives both columns from likes/comments to fix any drift
+// (crash before a flush, rows deleted outside these services). Committed deltas still
+// pending on some node look like drift too, so a post is only corrected when a run
+// finds the same drift as the previous run and no counter write happened in between
+// (counter_version unchanged): its deltas of then have all been flushed, and the
+// correction is added to the column, not a recount written over it.
+@Service
+public class PostCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostCounterService.class);
+
+    // posts whose columns differ from likes/comments
+    private static final String DRIFT_SQL = "SELECT id, counter_version, like_drift, comment_drift FROM (" +
+            "   SELECT p.id, p.counter_version, " +
+            "   (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) - p.like_count AS like_drift, " +
+            "   (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id AND c.hidden = false) - p.comment_count " +
+            "       AS comment_drift " +
+            "   FROM posts p) d WHERE like_drift <> 0 OR comment_drift <> 0";
+
+    private static final String REPAIR_SQL = "UPDATE posts SET like_count = like_count + ?, " +
+            "comment_count = comment_count + ?, counter_version = counter_version + 1 " +
+            "WHERE id = ? AND counter_version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostRepository postRepository;
+
+    private final ConcurrentHashMap<String, LongAdder> pendingLikes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> pendingComments = new ConcurrentHashMap<>();
+    // drift seen by the previous repair run, by post id
+    private Map<String, CounterDrift> previousDrift = Map.of();
+
+    public PostCounterService(JdbcTemplate jdbcTemplate, PostRepository postRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.postRepository = postRepository;
+    }
+
+    // Deltas are applied once the caller's transaction commits, a rolled back like doesn't count
+    public void recordLike(String postId, long delta) {
+        afterCommit(() -> add(pendingLikes, postId, delta));
+    }
+
+    public void recordComment(String postId, long delta) {
+        afterCommit(() -> add(pendingComments, postId, delta));
+    }
+
+    public long getLikeCount(Post post) {
+        return post.getLikeCount() + pending(pendingLikes, post.getId());
+    }
+
+    public long getCommentCount(Post post) {
+        return post.getCommentCount() + pending(pendingComments, post.getId());
+    }
+
+    public long getLikeCount(String postId) {
+        return postRepository.findLikeCountById(postId).orElse(0L) + pending(pendingLikes, postId);
+    }
+
+    @Scheduled(fixedDelayString = "${posts.counters.flush-interval-ms:1000}")
+    public void flush() {
+        flush(pendingLikes,
+                "UPDATE posts SET like_count = like_count + ?, counter_version = counter_version + 1 WHERE id = ?");
+        flush(pendingComments,
+                "UPDATE posts SET comment_count = comment_count + ?, counter_version = counter_version + 1 WHERE id = ?");
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${posts.counters.repair-interval-ms:3600000}",
+            initialDelayString = "${posts.counters.repair-initial-delay-ms:30000}")
+    public synchronized void repair() {
+        flush();
+        Map<String, CounterDrift> drift = new HashMap<>();
+        jdbcTemplate.query(DRIFT_SQL, rs -> {
+            drift.put(rs.getString("id"), new CounterDrift(rs.getLong("counter_version"),
+                    rs.getLong("like_drift"), rs.getLong("comment_drift")));
+        });
+
+        int repaired = 0;
+        for (Iterator<Map.Entry<String, CounterDrift>> it = drift.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, CounterDrift> entry = it.next();
+            CounterDrift current = entry.getValue();
+            if (!current.equals(previousDrift.get(entry.getKey()))) {
+                continue;
+            }
+            // another node may have corrected it, or a flush landed since the query
+            repaired += jdbcTemplate.update(REPAIR_SQL, current.likeDrift(), current.commentDrift(),
+                    entry.getKey(), current.version());
+            it.remove();
+        }
+        previousDrift = drift;
+        if (repaired > 0) {
+            log.info("Repaired like/comment counters of {} posts", repaired);
+        }
+    }
+
+    private void flush(ConcurrentHashMap<String, LongAdder> pending, String sql) {
+        List<Object[]> batch = new ArrayList<>();
+        List<Map.Entry<String, Long>> flushed = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta == 0) {
+                // dropped only if still empty; add() notices and retries on a fresh adder
+                pending.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            batch.add(new Object[] { delta, entry.getKey() });
+            flushed.add(Map.entry(entry.getKey(), delta));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(sql, batch);
+        } catch (RuntimeException ex) {
+            // deltas stay pending and are retried on the next flush
+            log.warn("Could not flush post counters", ex);
+            return;
+        }
+        // subtract only what was written, increments that arrived meanwhile stay pending
+        for (Map.Entry<String, Long> entry : flushed) {
+            add(pending, entry.getKey(), -entry.getValue());
+        }
+    }
+
+    private record CounterDrift(long version, long likeDrift, long commentDrift) {
+    }
+
+    private static void add(ConcurrentHashMap<String, LongAdder> pending, String postId, long delta) {
+        while (true) {
+            LongAdder adder = pending.computeIfAbsent(postId, key -> new LongAdder());
+            adder.add(delta);
+            if (pending.get(postId) == adder) {
+                return;
+            }
+            // flush() removed this adder as empty right before our add: undo and retry
+            adder.add(-delta);
+        }
+    }
+
+    private static long pending(ConcurrentHashMap<String, LongAdder> pending, String postId) {
+        LongAdder adder = pending.get(postId);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -2,22 +2,25 @@ package com.zone.zone01blog.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.zone.zone01blog.dto.CreatePostRequest;
+import com.zone.zone01blog.dto.PageResponse;
 import com.zone.zone01blog.dto.PostDTO;
 import com.zone.zone01blog.dto.UpdatePostRequest;
 import com.zone.zone01blog.dto.UserDTO;
-import com.zone.zone01blog.entity.NotificationType;
 import com.zone.zone01blog.entity.Post;
 import com.zone.zone01blog.entity.User;
 import com.zone.zone01blog.exception.PostNotFoundException;
 import com.zone.zone01blog.exception.UnauthorizedAccessException;
 import com.zone.zone01blog.repository.PostRepository;
+import com.zone.zone01blog.util.PageCursor;
 
 import jakarta.transaction.Transactional;
 
@@ -27,41 +30,53 @@ public class PostService {
 
     private final PostRepository postRepository;
     private final UserService userService;
-    private final CommentService commentService;
     private final LikeService likeService;
+    private final PostCounterService postCounterService;
     private final SubscriptionService subscriptionService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
     private final FileStorageService fileStorageService;
+    private final TimelineService timelineService;
+    private final NewPostNotificationService newPostNotificationService;
+    private final MediaVariantService mediaVariantService;
 
     public PostService(PostRepository postRepository,
             UserService userService,
-            CommentService commentService,
             LikeService likeService,
+            PostCounterService postCounterService,
             SubscriptionService subscriptionService,
-            NotificationService notificationService,
-            FileStorageService fileStorageService) {
+            OutboxService outboxService,
+            FileStorageService fileStorageService,
+            TimelineService timelineService,
+            NewPostNotificationService newPostNotificationService,
+            MediaVariantService mediaVariantService) {
         this.postRepository = postRepository;
         this.userService = userService;
-        this.commentService = commentService;
         this.likeService = likeService;
+        this.postCounterService = postCounterService;
         this.subscriptionService = subscriptionService;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
         this.fileStorageService = fileStorageService;
+        this.timelineService = timelineService;
+        this.newPostNotificationService = newPostNotificationService;
+        this.mediaVariantService = mediaVariantService;
 
     }
 
-    public List<PostDTO> getAllPosts(String currentUserId) {
-        List<Post> posts = postRepository.findAllWithAuthors();
-        return posts.stream()
-                .map(post -> convertToDTO(post, currentUserId))
-                .collect(Collectors.toList());
+    public PageResponse<PostDTO> getAllPosts(String currentUserId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.normalizeLimit(limit);
+        // one extra row tells us whether there is a next page
+        Limit fetch = Limit.of(pageSize + 1);
+
+        List<Post> posts = after == null
+                ? postRepository.findAllWithAuthors(fetch)
+                : postRepository.findAllWithAuthorsBefore(after.createdAt(), after.id(), fetch);
+        return toPage(posts, pageSize, currentUserId);
     }
 
     public List<PostDTO> getAllPostsForAdmin() {
         List<Post> posts = postRepository.findAllWithAuthorsIncludingHidden();
-        return posts.stream()
-                .map(post -> convertToDTO(post, null))
-                .collect(Collectors.toList());
+        return convertToDTOs(posts, null);
     }
 
 
@@ -70,6 +85,10 @@ public class PostService {
         return postRepository.count();
     }
 
+    public long getPostsCount(String userId) {
+        return postRepository.countByAuthorIdAndHiddenFalse(userId);
+    }
+
     public PostDTO getPostById(String id, String currentUserId) {
         Post post = postRepository.findVisibleByIdWithAuthor(id);
         if (post == null) {
@@ -78,27 +97,31 @@ public class PostService {
         return convertToDTO(post, currentUserId);
     }
 
-    public List<PostDTO> getFeed(String currentUserId) {
-        List<String> authorIds = new ArrayList<>(subscriptionService.getFollowingIds(currentUserId));
-        if (!authorIds.contains(currentUserId)) {
-            authorIds.add(currentUserId);
-        }
+    public PageResponse<PostDTO> getFeed(String currentUserId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.normalizeLimit(limit);
+        Limit fetch = Limit.of(pageSize + 1);
 
-        List<Post> feedPosts = postRepository.findFeedPostsByFollowingIds(authorIds);
+        // the timeline already contains pushed authors' posts and the user's own,
+        // high-follower authors among followingIds are pulled and merged in
+        List<String> followingIds = subscriptionService.getFollowingIds(currentUserId);
+        List<Post> feedPosts = timelineService.getFeedPosts(currentUserId, followingIds, after, fetch);
 
-        return feedPosts.stream()
-                .map(post -> convertToDTO(post, currentUserId))
-                .collect(Collectors.toList());
+        return toPage(feedPosts, pageSize, currentUserId);
     }
 
-    public List<PostDTO> getPostsByUserId(String userId, String currentUserId) {
+    public PageResponse<PostDTO> getPostsByUserId(String userId, String currentUserId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.normalizeLimit(limit);
+        Limit fetch = Limit.of(pageSize + 1);
+
         userService.getUserEntityById(userId);
 
-        List<Post> userPosts = postRepository.findByAuthorIdWithAuthor(userId);
+        List<Post> userPosts = after == null
+                ? postRepository.findByAuthorIdWithAuthor(userId, fetch)
+                : postRepository.findByAuthorIdWithAuthorBefore(userId, after.createdAt(), after.id(), fetch);
 
-        return userPosts.stream()
-                .map(post -> convertToDTO(post, currentUserId))
-                .collect(Collectors.toList());
+        return toPage(userPosts, pageSize, currentUserId);
     }
 
     public PostDTO createPost(CreatePostRequest request, String userId) {
@@ -114,20 +137,14 @@ public class PostService {
                 .author(author)
                 .build();
 
-        Post savedPost = postRepository.save(post);
+        // flushed so the timeline rows can reference it
+        Post savedPost = postRepository.saveAndFlush(post);
+        timelineService.onPostCreated(savedPost, subscriptionService.getFollowersCount(userId));
 
-        List<User> followers = subscriptionService.getFollowers(userId).stream()
-                .map(dto -> userService.getUserEntityById(dto.getId()))
-                .collect(Collectors.toList());
-
-        for (User follower : followers) {
-            String message = author.getName() + " created a new post: " + savedPost.getTitle();
-            notificationService.createNotification(
-                    follower,
-                    NotificationType.NEW_POST,
-                    message,
-                    author,
-                    savedPost);
+        // in pull mode followers see it in their inbox at read time, nothing to send
+        if (!newPostNotificationService.isPullMode()) {
+            String message = NewPostNotificationService.messageFor(author, savedPost);
+            outboxService.enqueueNewPost(userId, savedPost.getId(), message);
         }
 
         return convertToDTO(savedPost, userId);
@@ -174,6 +191,12 @@ public class PostService {
         }
         post.setHidden(hidden);
         Post updated = postRepository.save(post);
+        if (hidden) {
+            timelineService.onPostHidden(postId);
+        } else {
+            timelineService.onPostUnhidden(updated,
+                    subscriptionService.getFollowersCount(updated.getAuthor().getId()));
+        }
         return convertToDTO(updated, null);
     }
 
@@ -196,16 +219,21 @@ public class PostService {
             throw new UnauthorizedAccessException("You can only upload media to your own posts");
         }
 
+        // stored first: a rejected upload must not cost the post its current media
+        FileStorageService.StoredFile storedFile = fileStorageService.storeFile(file);
+        String mediaType = fileStorageService.getMediaType(storedFile.contentType());
+        mediaVariantService.generateAsync(storedFile.filename());
+
         if (post.getMediaUrl() != null) {
             String oldFilename = extractFilenameFromUrl(post.getMediaUrl());
-            fileStorageService.deleteFile(oldFilename);
+            fileStorageService.release(oldFilename);
         }
 
-        FileStorageService.StoredFile storedFile = fileStorageService.storeFile(file);
-        String mediaType = fileStorageService.getMediaType(storedFile.contentType());
-
-        post.setMediaUrl("/api/v1/media/" + storedFile.filename());
+        post.setMediaUrl(FileStorageService.MEDIA_URL_PREFIX + storedFile.filename());
         post.setMediaType(mediaType);
+        post.setMediaWidth(storedFile.width());
+        post.setMediaHeight(storedFile.height());
+        post.setMediaPlaceholder(storedFile.placeholder());
 
         Post updatedPost = postRepository.save(post);
         return convertToDTO(updatedPost, userId);
@@ -223,10 +251,13 @@ public class PostService {
 
         if (post.getMediaUrl() != null) {
             String filename = extractFilenameFromUrl(post.getMediaUrl());
-            fileStorageService.deleteFile(filename);
+            fileStorageService.release(filename);
 
             post.setMediaUrl(null);
             post.setMediaType(null);
+            post.setMediaWidth(null);
+            post.setMediaHeight(null);
+            post.setMediaPlaceholder(null);
         }
 
         Post updatedPost = postRepository.save(post);
@@ -234,6 +265,44 @@ public class PostService {
     }
 
     private PostDTO convertToDTO(Post post, String currentUserId) {
+        boolean likedByCurrentUser = currentUserId != null &&
+                likeService.hasUserLikedPost(post.getId(), currentUserId);
+
+        return convertToDTO(post, likedByCurrentUser);
+    }
+
+    // List version: counts are columns on the post, the viewer's likes for the
+    // whole page are loaded with one query instead of one per post
+    private List<PostDTO> convertToDTOs(List<Post> posts, String currentUserId) {
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> postIds = posts.stream()
+                .map(Post::getId)
+                .collect(Collectors.toList());
+
+        Set<String> likedPostIds = likeService.getLikedPostIds(currentUserId, postIds);
+
+        return posts.stream()
+                .map(post -> convertToDTO(post, likedPostIds.contains(post.getId())))
+                .collect(Collectors.toList());
+    }
+
+    // rows were fetched with limit + 1: the extra row only signals that a next page exists
+    private PageResponse<PostDTO> toPage(List<Post> rows, int pageSize, String currentUserId) {
+        boolean hasNext = rows.size() > pageSize;
+        List<Post> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Post last = page.get(page.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new PageResponse<>(convertToDTOs(page, currentUserId), nextCursor);
+    }
+
+    private PostDTO convertToDTO(Post post, boolean likedByCurrentUser) {
         User author = post.getAuthor();
 
         UserDTO authorDTO = new UserDTO(
@@ -244,25 +313,23 @@ public class PostService {
                 author.getCreatedAt(),
                 author.getUpdatedAt());
 
-        long likeCount = likeService.getLikeCount(post.getId());
-        long commentCount = commentService.getCommentCount(post.getId());
-
-        boolean likedByCurrentUser = currentUserId != null &&
-                likeService.hasUserLikedPost(post.getId(), currentUserId);
-
         return new PostDTO(
                 post.getId(),
                 post.getTitle(),
                 post.getDescription(),
-                likeCount,
+                postCounterService.getLikeCount(post),
                 authorDTO,
                 post.getCreatedAt(),
                 post.getUpdatedAt(),
-                commentCount,
+                postCounterService.getCommentCount(post),
                 likedByCurrentUser,
                 post.getMediaUrl(),
                 post.getMediaType(),
-                post.isHidden());
+                post.getMediaWidth(),
+                post.getMediaHeight(),
+                post.getMediaPlaceholder(),
+                post.isHidden(),
+                mediaVariantService.variantUrls(post.getMediaUrl()));
     }
 
     private String extractFilenameFromUrl(String url) {
@@ -272,8 +339,9 @@ public class PostService {
     private void deletePostEntity(Post post) {
         if (post.getMediaUrl() != null) {
             String filename = extractFilenameFromUrl(post.getMediaUrl());
-            fileStorageService.deleteFile(filename);
+            fileStorageService.release(filename);
         }
+        timelineService.onPostDeleted(post.getId());
         postRepository.deleteById(post.getId());
     }
 
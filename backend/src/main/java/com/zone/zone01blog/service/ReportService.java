@@ -8,6 +8,7 @@ import com.zone.zone01blog.exception.CannotReportSelfException;
 import com.zone.zone01blog.exception.CannotReportAdminException;
 import com.zone.zone01blog.exception.ReportNotFoundException;
 import com.zone.zone01blog.repository.ReportRepository;
+import com.zone.zone01blog.security.UserSecurityCache;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,10 +23,13 @@ public class ReportService {
 
     private final ReportRepository reportRepository;
     private final UserService userService;
+    private final UserSecurityCache userSecurityCache;
 
-    public ReportService(ReportRepository reportRepository, UserService userService) {
+    public ReportService(ReportRepository reportRepository, UserService userService,
+            UserSecurityCache userSecurityCache) {
         this.reportRepository = reportRepository;
         this.userService = userService;
+        this.userSecurityCache = userSecurityCache;
     }
 
     public ReportDTO createReport(String reportedUserId, CreateReportRequest request, String reporterId) {
@@ -87,6 +91,7 @@ public class ReportService {
         if (Boolean.TRUE.equals(request.getBanUser())) {
             User reportedUser = report.getReportedUser();
             reportedUser.setBanned(true);
+            userSecurityCache.evict(reportedUser.getId());
         }
 
         Report updatedReport = reportRepository.save(report);
@@ -20,14 +20,17 @@ public class SubscriptionService {
 
     private final SubscriptionRepository subscriptionRepository;
     private final UserService userService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final TimelineService timelineService;
 
     public SubscriptionService(SubscriptionRepository subscriptionRepository,
             UserService userService,
-            NotificationService notificationService) {
+            OutboxService outboxService,
+            TimelineService timelineService) {
         this.subscriptionRepository = subscriptionRepository;
         this.userService = userService;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
+        this.timelineService = timelineService;
     }
 
     public boolean toggleFollow(String followingId, String followerId) {
@@ -43,6 +46,7 @@ public class SubscriptionService {
 
         if (existingSubscription.isPresent()) {
             subscriptionRepository.delete(existingSubscription.get());
+            timelineService.onUnfollow(followerId, followingId);
             return false;
         } else {
             Subscription subscription = Subscription.builder()
@@ -52,13 +56,14 @@ public class SubscriptionService {
                     .build();
 
             subscriptionRepository.save(subscription);
+            timelineService.onFollow(followerId, followingId);
 
             String message = follower.getName() + " started following you";
-            notificationService.createNotification(
-                    following,
+            outboxService.enqueueNotification(
+                    followingId,
                     NotificationType.NEW_FOLLOWER,
                     message,
-                    follower,
+                    followerId,
                     null);
 
             return true;
@@ -96,10 +101,7 @@ public class SubscriptionService {
     }
 
     public List<String> getFollowingIds(String userId) {
-        List<User> followingUsers = subscriptionRepository.findFollowingByUserId(userId);
-        return followingUsers.stream()
-                .map(User::getId)
-                .collect(Collectors.toList());
+        return subscriptionRepository.findFollowingIdsByUserId(userId);
     }
 
     private UserDTO convertToDTO(User user) {
@@ -0,0 +1,180 @@
+package com.zone.zone01blog.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.zone.zone01blog.entity.Post;
+import com.zone.zone01blog.repository.PostRepository;
+import com.zone.zone01blog.repository.TimelineRepository;
+import com.zone.zone01blog.util.PageCursor;
+
+// Per-user home timeline, hybrid push/pull.
+// Most authors are pushed: every event that changes what a reader should see
+// (new post, follow, unfollow, hide, delete) updates the timeline_entries rows.
+// Posts by authors above feed.fanout.follower-threshold followers are pulled instead:
+// they are stored with pushed = false, read from posts at request time and k-way
+// merged with the pushed rows, so createPost never writes tens of thousands of rows
+// in the request thread. Which followed authors to pull is read from posts.pushed
+// on every request, so it is the same on every node from the commit on.
+// When an author is back under the threshold, pushPulledAuthors fans their recent
+// pulled posts out and marks them pushed; until then they are still pulled.
+@Service
+@Transactional
+public class TimelineService {
+
+    // newest first, same order as the keyset cursor
+    private static final Comparator<Post> NEWEST_FIRST = Comparator
+            .comparing(Post::getCreatedAt)
+            .thenComparing(Post::getId)
+            .reversed();
+
+    private final TimelineRepository timelineRepository;
+    private final PostRepository postRepository;
+    private final int backfillSize;
+    private final long followerThreshold;
+    private final TransactionTemplate transactionTemplate;
+
+    public TimelineService(TimelineRepository timelineRepository,
+            PostRepository postRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${feed.timeline.backfill-size:200}") int backfillSize,
+            @Value("${feed.fanout.follower-threshold:10000}") long followerThreshold) {
+        this.timelineRepository = timelineRepository;
+        this.postRepository = postRepository;
+        this.backfillSize = backfillSize;
+        this.followerThreshold = followerThreshold;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // followingIds: everyone the reader follows, used to find the pulled authors
+    public List<Post> getFeedPosts(String ownerId, List<String> followingIds, PageCursor after, Limit limit) {
+        List<Post> pushed = getTimelinePosts(ownerId, after, limit);
+
+        List<String> pulledAuthors = followingIds.isEmpty()
+                ? List.of()
+                : postRepository.findAuthorIdsWithUnpushedPosts(followingIds);
+        if (pulledAuthors.isEmpty()) {
+            return pushed;
+        }
+
+        List<List<Post>> sources = new ArrayList<>();
+        sources.add(pushed);
+        for (String authorId : pulledAuthors) {
+            sources.add(after == null
+                    ? postRepository.findByAuthorIdWithAuthor(authorId, limit)
+                    : postRepository.findByAuthorIdWithAuthorBefore(authorId, after.createdAt(), after.id(), limit));
+        }
+        return mergeNewestFirst(sources, limit.max());
+    }
+
+    private List<Post> getTimelinePosts(String ownerId, PageCursor after, Limit limit) {
+        if (after == null) {
+            if (!timelineRepository.existsByIdOwnerId(ownerId)) {
+                timelineRepository.rebuild(ownerId, backfillSize);
+            }
+            return timelineRepository.findTimelinePosts(ownerId, limit);
+        }
+        return timelineRepository.findTimelinePostsBefore(ownerId, after.createdAt(), after.id(), limit);
+    }
+
+    private boolean shouldPush(long followersCount) {
+        return followersCount <= followerThreshold;
+    }
+
+    // The post must already be flushed: entries reference it
+    public void onPostCreated(Post post, long authorFollowersCount) {
+        String authorId = post.getAuthor().getId();
+        // authors see their own posts in their feed
+        timelineRepository.insertEntry(authorId, post.getId(), authorId, post.getCreatedAt());
+        boolean push = shouldPush(authorFollowersCount);
+        if (push) {
+            timelineRepository.fanOutToFollowers(post.getId(), authorId, post.getCreatedAt());
+        }
+        // committed with the post, so every node pulls it from then on
+        postRepository.setPushed(post.getId(), push);
+    }
+
+    public void onPostHidden(String postId) {
+        timelineRepository.deleteByPostId(postId);
+    }
+
+    public void onPostUnhidden(Post post, long authorFollowersCount) {
+        onPostCreated(post, authorFollowersCount);
+    }
+
+    public void onPostDeleted(String postId) {
+        timelineRepository.deleteByPostId(postId);
+    }
+
+    // Also for pulled authors: their pushed posts (from before they crossed the
+    // threshold) are only in timelines, the pulled ones are merged at read time
+    public void onFollow(String followerId, String followingId) {
+        timelineRepository.backfillFromAuthor(followerId, followingId, backfillSize);
+    }
+
+    public void onUnfollow(String followerId, String followingId) {
+        timelineRepository.deleteByOwnerAndAuthor(followerId, followingId);
+    }
+
+    // Authors with pulled posts who are back at or below the threshold: their recent
+    // pulled posts are fanned out, then all of them marked pushed, one author per
+    // transaction. Posts created after the run started are left to the next run.
+    // Fan-out is idempotent (ON CONFLICT DO NOTHING), so nodes running it at the same
+    // time only repeat work.
+    @Scheduled(fixedDelayString = "${feed.fanout.push-pulled-authors-interval-ms:300000}",
+            initialDelayString = "${feed.fanout.push-pulled-authors-initial-delay-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void pushPulledAuthors() {
+        LocalDateTime before = LocalDateTime.now();
+        for (String authorId : postRepository.findAuthorIdsToPush(followerThreshold)) {
+            transactionTemplate.executeWithoutResult(status -> {
+                timelineRepository.fanOutUnpushedPosts(authorId, before, backfillSize);
+                postRepository.markAuthorPostsPushed(authorId, before);
+            });
+        }
+    }
+
+    // k-way merge of lists that are each sorted newest first. A post can be both
+    // pushed and pulled when its author just crossed the threshold, so ids are deduped.
+    private static List<Post> mergeNewestFirst(List<List<Post>> sources, int limit) {
+        PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> NEWEST_FIRST.compare(a.post(), b.post()));
+        for (List<Post> source : sources) {
+            if (!source.isEmpty()) {
+                heads.add(new Head(source, 0));
+            }
+        }
+
+        List<Post> merged = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head head = heads.poll();
+            if (seen.add(head.post().getId())) {
+                merged.add(head.post());
+            }
+            if (head.index() + 1 < head.source().size()) {
+                heads.add(new Head(head.source(), head.index() + 1));
+            }
+        }
+        return merged;
+    }
+
+    private record Head(List<Post> source, int index) {
+        Post post() {
+            return source.get(index);
+        }
+    }
+}
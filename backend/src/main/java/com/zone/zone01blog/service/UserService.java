@@ -8,6 +8,7 @@ import com.zone.zone01blog.dto.UserDTO;
 import com.zone.zone01blog.entity.User;
 import com.zone.zone01blog.exception.UserNotFoundException;
 import com.zone.zone01blog.repository.UserRepository;
+import com.zone.zone01blog.security.UserSecurityCache;
 
 import jakarta.transaction.Transactional;
 
@@ -22,11 +23,14 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserSecurityCache userSecurityCache;
 
     // Constructor injection
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+            UserSecurityCache userSecurityCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userSecurityCache = userSecurityCache;
     }
 
     public UserDTO getUserById(String id) {
@@ -142,6 +146,7 @@ public class UserService {
         }
 
         userRepository.deleteById(id);
+        userSecurityCache.evict(id);
     }
 
     public UserDTO toggleBan(String userId) {
@@ -150,6 +155,7 @@ public class UserService {
         // Force logout by invalidating existing tokens
         user.setTokenVersion(user.getTokenVersionSafe() + 1);
         User updatedUser = userRepository.save(user);
+        userSecurityCache.evict(userId);
         return convertToDTO(updatedUser);
     }
 
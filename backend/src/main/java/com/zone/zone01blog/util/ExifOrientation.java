@@ -0,0 +1,137 @@
+package com.zone.zone01blog.util;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// EXIF Orientation (tag 0x0112) of JPEG files. Cameras store photos as the sensor read
+// them and record how to turn them upright; browsers apply it, ImageIO ignores it.
+// Values 1-8 as in the EXIF spec, 1 (upright) when there is no tag or no EXIF.
+public final class ExifOrientation {
+
+    public static final int NORMAL = 1;
+
+    private static final int SOI = 0xFFD8;
+    private static final int SOS = 0xFFDA;
+    private static final int EOI = 0xFFD9;
+    private static final int APP1 = 0xFFE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    // Reads the JPEG segments up to the image data, never the pixels. NORMAL for
+    // anything that isn't a JPEG or can't be parsed.
+    public static int read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readUnsignedShort() != SOI) {
+                return NORMAL;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == SOS || marker == EOI) {
+                    return NORMAL;
+                }
+                int length = in.readUnsignedShort();
+                if (length < 2) {
+                    return NORMAL;
+                }
+                if (marker == APP1) {
+                    byte[] segment = new byte[length - 2];
+                    in.readFully(segment);
+                    if (isExif(segment)) {
+                        return parseTiff(segment, 6);
+                    }
+                } else {
+                    in.skipNBytes(length - 2);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            return NORMAL;
+        }
+    }
+
+    // 5-8 turn the image a quarter, so the displayed width is the stored height
+    public static boolean swapsDimensions(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    // The image as it is meant to be displayed
+    public static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation <= NORMAL || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            // mirrored
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            // rotated 180
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            // flipped
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            // mirrored along the top-left to bottom-right diagonal
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            // needs 90 clockwise
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            // mirrored along the other diagonal
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);
+            // needs 90 counter-clockwise
+            default -> new AffineTransform(0, -1, 1, 0, 0, width);
+        };
+        boolean swap = swapsDimensions(orientation);
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = new BufferedImage(swap ? height : width, swap ? width : height, type);
+        Graphics2D g = oriented.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return oriented;
+    }
+
+    private static boolean isExif(byte[] segment) {
+        return segment.length >= 14 && segment[0] == 'E' && segment[1] == 'x' && segment[2] == 'i'
+                && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0;
+    }
+
+    // TIFF header, then IFD0: 2-byte entry count, 12-byte entries (tag, type, count, value)
+    private static int parseTiff(byte[] data, int tiffStart) {
+        boolean littleEndian;
+        if (data[tiffStart] == 'I' && data[tiffStart + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[tiffStart] == 'M' && data[tiffStart + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return NORMAL;
+        }
+        int ifd = tiffStart + (int) readInt(data, tiffStart + 4, littleEndian);
+        int entries = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (readShort(data, entry, littleEndian) == ORIENTATION_TAG) {
+                int value = readShort(data, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean littleEndian) {
+        long high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
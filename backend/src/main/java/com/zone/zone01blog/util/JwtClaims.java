@@ -0,0 +1,5 @@
+package com.zone.zone01blog.util;
+
+// Claims of a token that passed signature and expiry checks
+public record JwtClaims(String userId, String role, long tokenVersion, long expiresAtMillis) {
+}
@@ -1,26 +1,67 @@
 package com.zone.zone01blog.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
+    // Set on tokens that are not access tokens, verify() rejects them
+    private static final String PURPOSE_CLAIM = "purpose";
+    private static final String STREAM_TICKET_PURPOSE = "stream";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+
+    @Value("${jwt.verified-cache.ttl-ms:300000}")
+    private long verifiedCacheTtlMillis;
+
+    @Value("${jwt.stream-ticket.ttl-ms:30000}")
+    private long streamTicketTtlMillis;
+
+    // Key and parser are immutable and thread-safe, build them once
+    private Key signingKey;
+    private JwtParser parser;
+
+    // Recently verified tokens by SHA-256 of the token, each entry expires with its token
+    private TtlCache<String, JwtClaims> verifiedTokens;
+
+    // Ids of redeemed stream tickets, kept as long as a ticket lives
+    private TtlCache<String, Boolean> redeemedTickets;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parser()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedTokens = new TtlCache<>(verifiedCacheMaxSize, verifiedCacheTtlMillis);
+        redeemedTickets = new TtlCache<>(verifiedCacheMaxSize, streamTicketTtlMillis);
+    }
+
     // Generate token with userId, role, and token version
     public String generateToken(String userId, String role, long tokenVersion) {
         Map<String, Object> claims = new HashMap<>();
@@ -32,20 +73,100 @@ public class JwtUtil {
                 .setSubject(userId) // "sub" claim = userId
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    // Short-lived, single-use credential for the notification stream. EventSource can't
+    // send headers, so it goes in the query string, where the access token must not be.
+    public String generateStreamTicket(String userId, String role, long tokenVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("role", role);
+        claims.put("tv", tokenVersion);
+        claims.put(PURPOSE_CLAIM, STREAM_TICKET_PURPOSE);
+
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(userId)
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + streamTicketTtlMillis))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    public long getStreamTicketTtlMillis() {
+        return streamTicketTtlMillis;
+    }
+
+    // Claims of a valid stream ticket used for the first time, null otherwise.
+    // Redeemed ids are remembered by this instance only, the short expiry bounds a
+    // replay on another one.
+    public JwtClaims redeemStreamTicket(String ticket) {
+        try {
+            Claims claims = parser.parseClaimsJws(ticket).getBody();
+            if (!STREAM_TICKET_PURPOSE.equals(claims.get(PURPOSE_CLAIM)) || claims.getId() == null
+                    || !redeemedTickets.putIfAbsent(claims.getId(), Boolean.TRUE)) {
+                return null;
+            }
+            return toJwtClaims(claims);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Verifies signature and expiry once and returns the claims, or null if the token is invalid
+    public JwtClaims verify(String token) {
+        try {
+            return getClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null; // Invalid signature, expired or malformed token
+        }
+    }
+
     public String getUserIdFromToken(String token) {
-        return extractClaims(token).getSubject();
+        return getClaims(token).userId();
     }
 
     public String getRoleFromToken(String token) {
-        return (String) extractClaims(token).get("role");
+        return getClaims(token).role();
     }
 
     public long getTokenVersionFromToken(String token) {
-        Object value = extractClaims(token).get("tv");
+        return getClaims(token).tokenVersion();
+    }
+
+    public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    // Throws JwtException if the token is invalid
+    private JwtClaims getClaims(String token) {
+        String key = digest(token);
+        JwtClaims cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // The parser rejects bad signatures and expired tokens
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.get(PURPOSE_CLAIM) != null) {
+            throw new JwtException("Not an access token");
+        }
+        JwtClaims verified = toJwtClaims(claims);
+        verifiedTokens.put(key, verified, verified.expiresAtMillis());
+        return verified;
+    }
+
+    private static JwtClaims toJwtClaims(Claims claims) {
+        return new JwtClaims(
+                claims.getSubject(),
+                (String) claims.get("role"),
+                toLong(claims.get("tv")),
+                claims.getExpiration().getTime());
+    }
+
+    private static long toLong(Object value) {
         if (value instanceof Integer) {
             return ((Integer) value).longValue();
         }
@@ -55,32 +176,12 @@ public class JwtUtil {
         return 0L;
     }
 
-    public boolean validateToken(String token) {
+    private static String digest(String token) {
         try {
-            extractClaims(token); // If this succeeds, token is valid
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false; // Invalid signature or malformed token
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
-
-    // Check if token is expired
-    private boolean isTokenExpired(String token) {
-        Date expiration = extractClaims(token).getExpiration();
-        return expiration.before(new Date());
-    }
-
-    // Extract all claims from token
-    private Claims extractClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    // Get the signing key from secret
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
-    }
 }
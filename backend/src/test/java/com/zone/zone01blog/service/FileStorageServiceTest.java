@@ -0,0 +1,63 @@
+package com.zone.zone01blog.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class FileStorageServiceTest {
+
+    private static final String HASH_NAME = "68543c85700bb8a88fffbe0d8e6c29268dc5cf457bbe43486ad87bdbcca595fe.png";
+
+    @Test
+    void storedNameIsShardedByItsFirstFourCharacters() {
+        assertEquals("68/54/", FileStorageService.shardDirectory(HASH_NAME));
+    }
+
+    @Test
+    void variantNameIsShardedLikeAStoredName() {
+        assertEquals("68/54/", FileStorageService.shardDirectory("68543c85_w640.png"));
+    }
+
+    @Test
+    void digitsAndLowercaseLettersAreSharded() {
+        assertEquals("ab/cd/", FileStorageService.shardDirectory("abcde"));
+        assertEquals("00/99/", FileStorageService.shardDirectory("0099.jpg"));
+    }
+
+    @Test
+    void namesNoLongerThanThePrefixStayAtTheTop() {
+        assertEquals("", FileStorageService.shardDirectory("abcd"));
+        assertEquals("", FileStorageService.shardDirectory("abc"));
+        assertEquals("", FileStorageService.shardDirectory(""));
+    }
+
+    @Test
+    void otherCharactersInThePrefixStayAtTheTop() {
+        // legacy names, temp files, the migration marker
+        assertEquals("", FileStorageService.shardDirectory("ABCDEF.png"));
+        assertEquals("", FileStorageService.shardDirectory("ab-cdef.png"));
+        assertEquals("", FileStorageService.shardDirectory(".tmp"));
+        assertEquals("", FileStorageService.shardDirectory(".flat-layout-migrated"));
+        assertEquals("", FileStorageService.shardDirectory("../etc/passwd"));
+        assertEquals("", FileStorageService.shardDirectory("ab/cdef"));
+    }
+
+    @Test
+    void onlyThePrefixIsChecked() {
+        assertEquals("ab/cd/", FileStorageService.shardDirectory("abcd-Not_Sharded.PNG"));
+    }
+
+    @Test
+    void sourceOfAVariantIsTheStoredName() {
+        assertEquals(HASH_NAME, FileStorageService.sourceFilename("variants/68/54/68543c85700bb8a88fffbe0d8e6c29268dc5cf457bbe43486ad87bdbcca595fe_w640.png"));
+        assertEquals("abcdef", FileStorageService.sourceFilename("abcdef_w320"));
+    }
+
+    @Test
+    void namesWithoutAWidthHaveNoSource() {
+        assertNull(FileStorageService.sourceFilename(HASH_NAME));
+        assertNull(FileStorageService.sourceFilename("abcdef_w.png"));
+        assertNull(FileStorageService.sourceFilename("abcdef_wide.png"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.zone.zone01blog.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.zone.zone01blog.repository.PostRepository;
+
+class PostCounterServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private PostCounterService service;
+    // rows the drift query returns: id, counter_version, like_drift, comment_drift
+    private List<Object[]> driftRows;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new PostCounterService(jdbcTemplate, mock(PostRepository.class));
+        driftRows = new ArrayList<>();
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : driftRows) {
+                handler.processRow(resultSet(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        when(jdbcTemplate.update(anyString(), any(), any(), any(), any())).thenReturn(1);
+    }
+
+    private static ResultSet resultSet(Object[] row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn((String) row[0]);
+        when(rs.getLong("counter_version")).thenReturn((Long) row[1]);
+        when(rs.getLong("like_drift")).thenReturn((Long) row[2]);
+        when(rs.getLong("comment_drift")).thenReturn((Long) row[3]);
+        return rs;
+    }
+
+    private void drift(String postId, long version, long likeDrift, long commentDrift) {
+        driftRows.add(new Object[] { postId, version, likeDrift, commentDrift });
+    }
+
+    @Test
+    void driftSeenOnceIsNotRepaired() {
+        drift("post-1", 3, 2, 0);
+
+        service.repair();
+
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any(), any());
+    }
+
+    @Test
+    void allConfirmedDriftsAreRepairedInOneRun() {
+        drift("post-1", 3, 2, 0);
+        drift("post-2", 7, 0, -1);
+        drift("post-3", 1, -4, 5);
+        service.repair();
+
+        service.repair();
+
+        verify(jdbcTemplate).update(anyString(), eq(2L), eq(0L), eq("post-1"), eq(3L));
+        verify(jdbcTemplate).update(anyString(), eq(0L), eq(-1L), eq("post-2"), eq(7L));
+        verify(jdbcTemplate).update(anyString(), eq(-4L), eq(5L), eq("post-3"), eq(1L));
+    }
+
+    @Test
+    void driftThatChangedBetweenRunsWaitsForTheNextRun() {
+        drift("post-1", 3, 2, 0);
+        drift("post-2", 7, 1, 0);
+        service.repair();
+        driftRows.clear();
+        drift("post-1", 3, 2, 0);
+        // a counter write landed in between
+        drift("post-2", 8, 1, 0);
+
+        service.repair();
+
+        verify(jdbcTemplate).update(anyString(), eq(2L), eq(0L), eq("post-1"), eq(3L));
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), eq("post-2"), any());
+
+        service.repair();
+
+        verify(jdbcTemplate).update(anyString(), eq(1L), eq(0L), eq("post-2"), eq(8L));
+    }
+
+    @Test
+    void repairedDriftIsNotConfirmedByTheNextRun() {
+        drift("post-1", 3, 2, 0);
+        drift("post-2", 7, 0, -1);
+        service.repair();
+        service.repair();
+
+        // the drift query still sees the old rows (the update lost its version race)
+        service.repair();
+
+        verify(jdbcTemplate, times(1)).update(anyString(), any(), any(), eq("post-1"), any());
+        verify(jdbcTemplate, times(1)).update(anyString(), any(), any(), eq("post-2"), any());
+    }
+}
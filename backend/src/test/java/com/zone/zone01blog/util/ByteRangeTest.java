@@ -0,0 +1,137 @@
+package com.zone.zone01blog.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+    private static final int MAX_RANGES = 3;
+
+    private static List<ByteRange> parse(String header) {
+        return ByteRange.parse(header, LENGTH, MAX_RANGES);
+    }
+
+    @Test
+    void closedRange() {
+        assertEquals(List.of(new ByteRange(0, 99)), parse("bytes=0-99"));
+        assertEquals(100, parse("bytes=0-99").get(0).length());
+        assertEquals("bytes 0-99/1000", parse("bytes=0-99").get(0).contentRange(LENGTH));
+    }
+
+    @Test
+    void endPastTheFileIsClamped() {
+        assertEquals(List.of(new ByteRange(900, 999)), parse("bytes=900-5000"));
+    }
+
+    @Test
+    void openEndRunsToTheLastByte() {
+        assertEquals(List.of(new ByteRange(500, 999)), parse("bytes=500-"));
+        assertEquals(List.of(new ByteRange(0, 999)), parse("bytes=0-"));
+    }
+
+    @Test
+    void suffixRangeIsTheLastBytes() {
+        assertEquals(List.of(new ByteRange(900, 999)), parse("bytes=-100"));
+    }
+
+    @Test
+    void suffixLongerThanTheFileIsTheWholeFile() {
+        assertEquals(List.of(new ByteRange(0, 999)), parse("bytes=-5000"));
+    }
+
+    @Test
+    void unitAndSpacesAreLenient() {
+        assertEquals(List.of(new ByteRange(0, 9)), parse("  BYTES=0-9 "));
+        assertEquals(List.of(new ByteRange(0, 9), new ByteRange(20, 29)), parse("bytes= 0-9 , 20-29"));
+    }
+
+    @Test
+    void rangesAreSorted() {
+        assertEquals(List.of(new ByteRange(0, 9), new ByteRange(500, 599)), parse("bytes=500-599,0-9"));
+    }
+
+    @Test
+    void overlappingRangesAreMerged() {
+        assertEquals(List.of(new ByteRange(0, 149)), parse("bytes=0-99,50-149"));
+        assertEquals(List.of(new ByteRange(0, 199)), parse("bytes=0-199,50-60"));
+    }
+
+    @Test
+    void adjacentRangesAreMerged() {
+        assertEquals(List.of(new ByteRange(0, 199)), parse("bytes=0-99,100-199"));
+    }
+
+    @Test
+    void suffixAndOpenEndMergeWithClosedRanges() {
+        assertEquals(List.of(new ByteRange(0, 9), new ByteRange(800, 999)), parse("bytes=900-,0-9,-200"));
+    }
+
+    @Test
+    void gapsAreKept() {
+        assertEquals(List.of(new ByteRange(0, 98), new ByteRange(100, 199)), parse("bytes=0-98,100-199"));
+    }
+
+    @Test
+    void maxRangesIsAllowed() {
+        assertEquals(3, parse("bytes=0-9,20-29,40-49").size());
+    }
+
+    @Test
+    void moreThanMaxRangesServesTheWholeFile() {
+        assertNull(parse("bytes=0-9,20-29,40-49,60-69"));
+    }
+
+    @Test
+    void cutoffCountsRangesBeforeMerging() {
+        assertNull(parse("bytes=0-9,0-9,0-9,0-9"));
+    }
+
+    @Test
+    void unsatisfiableRangeIsEmpty() {
+        // 416 Range Not Satisfiable
+        assertTrue(parse("bytes=1000-1099").isEmpty());
+        assertTrue(parse("bytes=5000-").isEmpty());
+        assertTrue(parse("bytes=-0").isEmpty());
+    }
+
+    @Test
+    void satisfiablePartsOfAMixedHeaderAreKept() {
+        assertEquals(List.of(new ByteRange(0, 9)), parse("bytes=0-9,2000-2099"));
+    }
+
+    @Test
+    void anyRangeOfAnEmptyFileIsUnsatisfiable() {
+        assertTrue(ByteRange.parse("bytes=0-", 0, MAX_RANGES).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-10", 0, MAX_RANGES).isEmpty());
+    }
+
+    @Test
+    void missingHeaderServesTheWholeFile() {
+        assertNull(parse(null));
+    }
+
+    @Test
+    void otherUnitsServeTheWholeFile() {
+        assertNull(parse("items=0-9"));
+    }
+
+    @Test
+    void malformedHeaderServesTheWholeFile() {
+        assertNull(parse("bytes=abc"));
+        assertNull(parse("bytes=5"));
+        assertNull(parse("bytes=-"));
+        assertNull(parse("bytes=x-10"));
+        assertNull(parse("bytes=0-9,oops"));
+    }
+
+    @Test
+    void reversedRangeServesTheWholeFile() {
+        assertNull(parse("bytes=99-0"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.zone.zone01blog.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+// Per-request cost of authenticating a bearer token.
+// legacyFilterPath is what JwtAuthenticationFilter did before JwtUtil.verify: a new
+// key and parser per call, validateToken plus three getters, five signature checks.
+// verifyUncached is one parse with the shared parser, verifyCached a repeat request
+// served from the verified-token cache.
+// Not run by the test suite. Run with:
+//   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+//   java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+//       com.zone.zone01blog.util.JwtVerificationBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtUtil jwtUtil;
+    private JwtUtil uncachedJwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = newJwtUtil(10_000);
+        // every lookup misses: the entry is evicted by the next put
+        uncachedJwtUtil = newJwtUtil(0);
+        token = jwtUtil.generateToken("user-1", "USER", 0);
+        jwtUtil.verify(token);
+    }
+
+    private static JwtUtil newJwtUtil(int cacheMaxSize) {
+        JwtUtil util = new JwtUtil();
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "expiration", 3_600_000L);
+        ReflectionTestUtils.setField(util, "verifiedCacheMaxSize", cacheMaxSize);
+        ReflectionTestUtils.setField(util, "verifiedCacheTtlMillis", cacheMaxSize == 0 ? 0L : 300_000L);
+        util.init();
+        return util;
+    }
+
+    @Benchmark
+    public void legacyFilterPath(Blackhole blackhole) {
+        // validateToken parsed twice: once to check the signature, once for the expiry
+        blackhole.consume(legacyParse(token));
+        blackhole.consume(legacyParse(token).getExpiration());
+        blackhole.consume(legacyParse(token).getSubject());
+        blackhole.consume(legacyParse(token).get("role"));
+        blackhole.consume(legacyParse(token).get("tv"));
+    }
+
+    @Benchmark
+    public JwtClaims verifyUncached() {
+        return uncachedJwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public JwtClaims verifyCached() {
+        return jwtUtil.verify(token);
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parser()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -18,6 +18,10 @@ export class HomeComponent implements OnInit {
   readonly loading = signal(false);
   // State: reactive value for the template.
   readonly error = signal('');
+  // State: cursor of the next feed page (null when everything is loaded).
+  readonly nextCursor = signal<string | null>(null);
+  // State: reactive value for the template.
+  readonly loadingMore = signal(false);
   readonly hasPosts = computed(() => this.posts().length > 0);
 
   // Constructor: injects dependencies.
@@ -34,8 +38,9 @@ export class HomeComponent implements OnInit {
     this.error.set('');
 
     this.postService.getFeed().subscribe({
-      next: (posts) => {
-        this.posts.set(posts);
+      next: (page) => {
+        this.posts.set(page.items);
+        this.nextCursor.set(page.nextCursor);
         this.loading.set(false);
       },
       error: (error) => {
@@ -46,6 +51,25 @@ export class HomeComponent implements OnInit {
     });
   }
 
+  // Loads the next feed page.
+  loadMore() {
+    const cursor = this.nextCursor();
+    if (!cursor || this.loadingMore()) return;
+
+    this.loadingMore.set(true);
+    this.postService.getFeed(cursor).subscribe({
+      next: (page) => {
+        this.posts.update((posts) => [...posts, ...page.items]);
+        this.nextCursor.set(page.nextCursor);
+        this.loadingMore.set(false);
+      },
+      error: (error) => {
+        console.error('Error loading more posts:', error);
+        this.loadingMore.set(false);
+      }
+    });
+  }
+
   // Handles like.
   onLike(postId: string) {
     this.postService.toggleLike(postId).subscribe({
@@ -43,8 +43,11 @@ export class ProfileComponent implements OnInit {
     readonly editError = signal('');
     // State: reactive value for the template.
     readonly successMessage = signal('');
+    // State: cursor of the next posts page (null when everything is loaded).
+    readonly nextCursor = signal<string | null>(null);
     readonly hasPosts = computed(() => this.posts().length > 0);
-    readonly postsCount = computed(() => this.posts().length);
+    // State: total from the profile, the posts list only holds the pages loaded so far.
+    readonly postsCount = computed(() => this.user()?.postsCount ?? this.posts().length);
     private successTimer: ReturnType<typeof setTimeout> | null = null;
 
     // Constructor: injects dependencies.
@@ -87,15 +90,16 @@ export class ProfileComponent implements OnInit {
         });
     }
 
-    // Loads  user posts.
-    loadUserPosts(userId: string) {
+    // Loads  user posts (first page, or the next one when a cursor is given).
+    loadUserPosts(userId: string, cursor: string | null = null) {
         const request$ = this.isAuthenticated()
-            ? this.postService.getUserPosts(userId)
-            : this.postService.getPublicUserPosts(userId);
+            ? this.postService.getUserPosts(userId, cursor)
+            : this.postService.getPublicUserPosts(userId, cursor);
 
         request$.subscribe({
-            next: (posts) => {
-                this.posts.set(posts);
+            next: (page) => {
+                this.posts.update((posts) => cursor ? [...posts, ...page.items] : page.items);
+                this.nextCursor.set(page.nextCursor);
             },
             error: (error) => {
                 console.error('Error loading user posts:', error);
@@ -194,6 +198,7 @@ export class ProfileComponent implements OnInit {
                     ...updatedUser,
                     followersCount: updatedUser.followersCount ?? existing?.followersCount ?? 0,
                     followingCount: updatedUser.followingCount ?? existing?.followingCount ?? 0,
+                    postsCount: updatedUser.postsCount ?? existing?.postsCount,
                     isFollowedByCurrentUser: updatedUser.isFollowedByCurrentUser ?? existing?.isFollowedByCurrentUser ?? false
                 }) as UserDTO);
                 this.isEditMode.set(false);
@@ -257,6 +262,9 @@ export class ProfileComponent implements OnInit {
         this.postService.deletePost(postId).subscribe({
             next: () => {
                 this.posts.update((posts) => posts.filter(p => p.id !== postId));
+                this.user.update((user) =>
+                    user?.postsCount != null ? { ...user, postsCount: Math.max(0, user.postsCount - 1) } : user
+                );
             },
             error: (error) => {
                 console.error('Error deleting post:', error);
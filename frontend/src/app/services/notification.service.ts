@@ -1,8 +1,9 @@
 // Purpose: Notification API service.
-import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { Injectable, NgZone } from '@angular/core';
+import { HttpClient, HttpParams } from '@angular/common/http';
+import { Observable, Subscription } from 'rxjs';
 import { environment } from '../../environments/environment';
+import { AuthService } from './auth.service';
 
 export interface NotificationDTO {
     id: string;
@@ -12,8 +13,36 @@ export interface NotificationDTO {
     createdAt: string;
     relatedPostId?: string;
     relatedUserId?: string;
+    // > 1 when likes/comments on a post were merged into this notification
+    actorCount?: number;
+    recentActorIds?: string[];
 }
 
+export interface NotificationPage {
+    items: NotificationDTO[];
+    nextCursor: string | null;
+}
+
+export interface NotificationQuery {
+    cursor?: string | null;
+    limit?: number;
+    types?: string[];
+    unreadOnly?: boolean;
+}
+
+export interface NotificationPreference {
+    type: string;
+    muted: boolean;
+}
+
+// Events pushed by /notifications/stream.
+export type NotificationStreamEvent =
+    | { kind: 'notification'; notification: NotificationDTO }
+    | { kind: 'unread-count'; count: number };
+
+// Delay before reopening the notification stream after it dropped.
+const STREAM_RECONNECT_DELAY_MS = 5000;
+
 @Injectable({
     providedIn: 'root'
 })
@@ -23,10 +52,68 @@ export class NotificationService {
     private apiUrl = `${environment.apiBaseUrl}/notifications`;
 
     // Constructor: injects dependencies.
-    constructor(private http: HttpClient) { }
+    constructor(private http: HttpClient, private authService: AuthService, private zone: NgZone) { }
 
-    getNotifications(): Observable<NotificationDTO[]> {
-        return this.http.get<NotificationDTO[]>(this.apiUrl);
+    // Server-Sent Events stream. EventSource can't send headers, so each connection
+    // opens with a single-use ticket in the query string (never the access token).
+    // A used ticket can't reconnect, so on error the source is replaced with one
+    // holding a fresh ticket instead of relying on EventSource's own retry.
+    // Errors when the browser has no EventSource or no ticket can be obtained.
+    stream(): Observable<NotificationStreamEvent> {
+        return new Observable<NotificationStreamEvent>((subscriber) => {
+            if (typeof EventSource === 'undefined' || !this.authService.getToken()) {
+                subscriber.error(new Error('Notification stream unavailable'));
+                return;
+            }
+
+            let source: EventSource | undefined;
+            let ticketRequest: Subscription | undefined;
+            let reconnectTimer: ReturnType<typeof setTimeout> | undefined;
+            const connect = () => {
+                ticketRequest = this.http.post<{ ticket: string }>(`${this.apiUrl}/stream-ticket`, {}).subscribe({
+                    next: ({ ticket }) => {
+                        source = new EventSource(`${this.apiUrl}/stream?ticket=${encodeURIComponent(ticket)}`);
+                        source.addEventListener('notification', (event) => {
+                            const notification = JSON.parse((event as MessageEvent).data) as NotificationDTO;
+                            this.zone.run(() => subscriber.next({ kind: 'notification', notification }));
+                        });
+                        source.addEventListener('unread-count', (event) => {
+                            const { count } = JSON.parse((event as MessageEvent).data) as { count: number };
+                            this.zone.run(() => subscriber.next({ kind: 'unread-count', count }));
+                        });
+                        source.onerror = () => {
+                            source?.close();
+                            reconnectTimer = setTimeout(connect, STREAM_RECONNECT_DELAY_MS);
+                        };
+                    },
+                    error: (error) => subscriber.error(error)
+                });
+            };
+            connect();
+
+            return () => {
+                ticketRequest?.unsubscribe();
+                clearTimeout(reconnectTimer);
+                source?.close();
+            };
+        });
+    }
+
+    getNotifications(query: NotificationQuery = {}): Observable<NotificationPage> {
+        let params = new HttpParams();
+        if (query.cursor) {
+            params = params.set('cursor', query.cursor);
+        }
+        if (query.limit) {
+            params = params.set('limit', query.limit);
+        }
+        if (query.types?.length) {
+            params = params.set('type', query.types.join(','));
+        }
+        if (query.unreadOnly) {
+            params = params.set('unreadOnly', true);
+        }
+        return this.http.get<NotificationPage>(this.apiUrl, { params });
     }
 
     getUnreadCount(): Observable<{ count: number }> {
@@ -49,4 +136,12 @@ export class NotificationService {
         return this.http.delete<void>(`${this.apiUrl}/${notificationId}`);
     }
 
+    getPreferences(): Observable<NotificationPreference[]> {
+        return this.http.get<NotificationPreference[]>(`${this.apiUrl}/preferences`);
+    }
+
+    setMuted(type: string, muted: boolean): Observable<NotificationPreference[]> {
+        return this.http.put<NotificationPreference[]>(`${this.apiUrl}/preferences/${type}`, { muted });
+    }
+
 }
@@ -1,6 +1,6 @@
 // Purpose: Post API service.
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from '../../environments/environment';
 
@@ -16,7 +16,19 @@ export interface PostDTO {
     likedByCurrentUser: boolean;
     mediaUrl?: string;
     mediaType?: string;
+    // image size and a tiny data URI shown until the image loads
+    mediaWidth?: number;
+    mediaHeight?: number;
+    mediaPlaceholder?: string;
     hidden?: boolean;
+    // width -> downscaled image URL (?w=), for srcset
+    mediaVariantUrls?: Record<number, string>;
+}
+
+// One cursor-paginated page; nextCursor is null on the last page.
+export interface PostPage {
+    items: PostDTO[];
+    nextCursor: string | null;
 }
 
 export interface CreatePostRequest {
@@ -39,16 +51,16 @@ export class PostService {
         return this.http.post<PostDTO>(this.apiUrl, data);
     }
 
-    getFeed(): Observable<PostDTO[]> {
-        return this.http.get<PostDTO[]>(`${this.apiUrl}/feed`);
+    getFeed(cursor?: string | null): Observable<PostPage> {
+        return this.http.get<PostPage>(`${this.apiUrl}/feed`, { params: this.pageParams(cursor) });
     }
 
-    getUserPosts(userId: string): Observable<PostDTO[]> {
-        return this.http.get<PostDTO[]>(`${environment.apiBaseUrl}/users/${userId}/posts`);
+    getUserPosts(userId: string, cursor?: string | null): Observable<PostPage> {
+        return this.http.get<PostPage>(`${environment.apiBaseUrl}/users/${userId}/posts`, { params: this.pageParams(cursor) });
     }
 
-    getPublicUserPosts(userId: string): Observable<PostDTO[]> {
-        return this.http.get<PostDTO[]>(`${environment.apiBaseUrl}/public/users/${userId}/posts`);
+    getPublicUserPosts(userId: string, cursor?: string | null): Observable<PostPage> {
+        return this.http.get<PostPage>(`${environment.apiBaseUrl}/public/users/${userId}/posts`, { params: this.pageParams(cursor) });
     }
 
     getPostById(postId: string): Observable<PostDTO> {
@@ -76,4 +88,9 @@ export class PostService {
     deleteMedia(postId: string): Observable<PostDTO> {
         return this.http.delete<PostDTO>(`${this.apiUrl}/${postId}/media`);
     }
+
+    // Builds cursor query params (first page when no cursor).
+    private pageParams(cursor?: string | null): HttpParams {
+        return cursor ? new HttpParams().set('cursor', cursor) : new HttpParams();
+    }
 }
@@ -12,6 +12,8 @@ export interface UserDTO {
     banned?: boolean;
     followersCount: number;
     followingCount: number;
+    // visible posts, all pages (profile endpoints only)
+    postsCount?: number;
     isFollowedByCurrentUser: boolean;
 }
 
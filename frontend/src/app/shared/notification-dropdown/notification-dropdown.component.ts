@@ -23,7 +23,10 @@ export class NotificationDropdownComponent implements OnInit, OnDestroy {
     readonly loading = signal(false);
     readonly hasNotifications = computed(() => this.notifications().length > 0);
     readonly hasUnread = computed(() => this.unreadCount() > 0);
+    // Pulled NEW_POST items are only counted up to 99 + 1
+    readonly badgeText = computed(() => (this.unreadCount() > 99 ? '99+' : String(this.unreadCount())));
     private pollSubscription?: Subscription;
+    private streamSubscription?: Subscription;
 
     // Constructor: injects dependencies.
     constructor(
@@ -34,15 +37,33 @@ export class NotificationDropdownComponent implements OnInit, OnDestroy {
     ngOnInit() {
         this.loadNotifications();
         this.loadUnreadCount();
-        // Poll for new notifications every 30 seconds
-        this.pollSubscription = interval(30000).subscribe(() => {
-            this.loadUnreadCount();
+        // New notifications and counts are pushed over SSE
+        this.streamSubscription = this.notificationService.stream().subscribe({
+            next: (event) => {
+                if (event.kind === 'notification') {
+                    this.notifications.update((notifications) => [event.notification, ...notifications].slice(0, 10));
+                } else {
+                    this.unreadCount.set(event.count);
+                }
+            },
+            error: () => this.startPolling(30000)
         });
+        // Slow poll as a fallback (pushes only reach sessions on the same server)
+        this.startPolling(300000);
     }
 
     // Angular lifecycle: ng on destroy.
     ngOnDestroy() {
         this.pollSubscription?.unsubscribe();
+        this.streamSubscription?.unsubscribe();
+    }
+
+    // Polls the unread count.
+    private startPolling(periodMs: number) {
+        this.pollSubscription?.unsubscribe();
+        this.pollSubscription = interval(periodMs).subscribe(() => {
+            this.loadUnreadCount();
+        });
     }
 
     // Toggles dropdown.
@@ -56,9 +77,9 @@ export class NotificationDropdownComponent implements OnInit, OnDestroy {
     // Loads  notifications.
     loadNotifications() {
         this.loading.set(true);
-        this.notificationService.getNotifications().subscribe({
-            next: (notifications) => {
-                this.notifications.set(notifications.slice(0, 10)); // Show latest 10
+        this.notificationService.getNotifications({ limit: 10 }).subscribe({
+            next: (page) => {
+                this.notifications.set(page.items); // Show latest 10
                 this.loading.set(false);
             },
             error: (error) => {